@@ -0,0 +1,92 @@
+package ma.emsi.fraud.config;
+
+import ma.emsi.fraud.service.ClusterStateService;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+
+/**
+ * Topics du mode cluster (créés ou agrandis au démarrage par KafkaAdmin).
+ * fraud-checks reçoit autant de partitions que d'instances visées au maximum :
+ * c'est la borne du passage à l'échelle. Attention, ajouter des partitions à
+ * un topic existant change la partition de chaque clé.
+ */
+@Configuration
+@ConditionalOnProperty(name = "fraud.cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    @Value("${fraud.cluster.replication-factor:1}")
+    private short replicationFactor;
+
+    @Bean
+    public NewTopic fraudChecksTopic(@Value("${fraud.cluster.partitions:12}") int partitions) {
+        return TopicBuilder.name("fraud-checks")
+                .partitions(partitions)
+                .replicas(replicationFactor)
+                .build();
+    }
+
+    /**
+     * Une seule partition : l'instance qui reprend attend d'en avoir lu la fin
+     */
+    @Bean
+    public NewTopic fraudClusterStateTopic() {
+        return TopicBuilder.name(ClusterStateService.STATE_TOPIC)
+                .partitions(1)
+                .replicas(replicationFactor)
+                .compact()
+                .build();
+    }
+
+    @Bean
+    public NewTopic fraudStreamTopic(@Value("${fraud.cluster.stream-retention:1h}") Duration retention) {
+        return TopicBuilder.name(ClusterStateService.STREAM_TOPIC)
+                .partitions(1)
+                .replicas(replicationFactor)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(retention.toMillis()))
+                .build();
+    }
+
+    /**
+     * Transactions comptées par chaque instance (ClusterVelocityRelay) : lues
+     * en direct, la rétention ne sert qu'au diagnostic
+     */
+    @Bean
+    public NewTopic fraudVelocityTopic(@Value("${fraud.cluster.velocity-retention:10m}") Duration retention) {
+        return TopicBuilder.name(ClusterStateService.VELOCITY_TOPIC)
+                .partitions(1)
+                .replicas(replicationFactor)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(retention.toMillis()))
+                .build();
+    }
+
+    /**
+     * Listeners lus par toutes les instances (partition assignée manuellement,
+     * groupe fraud-*-<node-id> propre à chacune) : pas de
+     * rejeu ni de DLT, un lot en échec est journalisé puis ignoré
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> clusterBroadcastListenerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(0, 0)));
+        return factory;
+    }
+}
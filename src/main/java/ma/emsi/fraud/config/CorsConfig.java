@@ -15,6 +15,7 @@ public class CorsConfig implements WebFluxConfigurer {
                 .allowedOrigins("*")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("X-Next-Cursor")
                 .maxAge(3600);
     }
 }
@@ -0,0 +1,23 @@
+package ma.emsi.fraud.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class JdbcSchedulerConfig {
+
+    /**
+     * Scheduler dédié aux appels JPA/JDBC bloquants : autant de threads que de
+     * connexions Hikari (un thread de plus n'attendrait qu'une connexion) et une
+     * file bornée. File pleine = RejectedExecutionException, jamais l'event loop bloqué.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${fraud.jdbc.queue-capacity:1000}") int queueCapacity) {
+        return Schedulers.newBoundedElastic(poolSize, queueCapacity, "jdbc");
+    }
+}
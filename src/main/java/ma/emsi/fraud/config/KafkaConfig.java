@@ -0,0 +1,52 @@
+package ma.emsi.fraud.config;
+
+import ma.emsi.fraud.service.ClusterStateService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * Listener en mode batch pour l'audit : une liste de records par poll,
+     * offsets commités seulement après le retour du listener (lot persisté).
+     * En cas d'échec : lot rejoué avec backoff exponentiel (~5 min), puis
+     * envoyé sur fraud-checks.DLT plutôt que perdu. Un audit invalide part
+     * seul, et tout de suite, sur la DLT.
+     * En mode cluster, les rebalances passent par ClusterStateService
+     * (passage de relais de l'état des partitions).
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> auditBatchListenerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            KafkaTemplate<Object, Object> kafkaTemplate,
+            ObjectProvider<ClusterStateService> cluster) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        cluster.ifAvailable(state -> factory.getContainerProperties()
+                .setConsumerRebalanceListener(state.rebalanceListener()));
+
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(12);
+        backOff.setInitialInterval(500);
+        backOff.setMultiplier(2.0);
+        backOff.setMaxInterval(30_000);
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(new DeadLetterPublishingRecoverer(kafkaTemplate),
+                backOff);
+        // Audit invalide (BatchListenerFailedException de AuditConsumer) : DLT sans rejeu
+        errorHandler.addNotRetryableExceptions(IllegalArgumentException.class);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+}
@@ -0,0 +1,119 @@
+package ma.emsi.fraud.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import ma.emsi.fraud.consumer.ScoringRequestConsumer;
+import ma.emsi.fraud.model.FraudRequest;
+import ma.emsi.fraud.service.FraudDecisionService;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Scoring Kafka-first (fraud.scoring.kafka.enabled=true) : les FraudRequest
+ * JSON lus sur fraud-requests sont décidés par lots, la réponse part sur
+ * fraud-decisions et l'audit sur fraud-checks, dans la même transaction Kafka
+ * que le commit des offsets consommés (exactly-once de bout en bout).
+ * La vélocité, en mémoire, est hors transaction : {@link ScoringRequestConsumer}
+ * ne la compte qu'une fois par offset, sur l'instance qui a vu le lot.
+ * Le producteur transactionnel, son KafkaTemplate et le KafkaTransactionManager
+ * ne sont pas des beans : ils désactiveraient le producteur auto-configuré
+ * (audits HTTP, outbox) et le gestionnaire de transactions JPA.
+ */
+@Configuration
+@ConditionalOnProperty(name = "fraud.scoring.kafka.enabled", havingValue = "true")
+public class StreamScoringConfig {
+
+    private final KafkaProperties kafkaProperties;
+    private final DefaultKafkaProducerFactory<Object, Object> producerFactory;
+    private final KafkaTemplate<Object, Object> kafkaTemplate;
+
+    @Value("${fraud.scoring.kafka.request-topic:fraud-requests}")
+    private String requestTopic;
+
+    @Value("${fraud.scoring.kafka.decision-topic:fraud-decisions}")
+    private String decisionTopic;
+
+    @Value("${fraud.scoring.kafka.partitions:12}")
+    private int partitions;
+
+    public StreamScoringConfig(KafkaProperties kafkaProperties,
+            @Value("${fraud.scoring.kafka.transaction-id-prefix:fraud-scoring-}") String transactionIdPrefix) {
+        this.kafkaProperties = kafkaProperties;
+        this.producerFactory = new DefaultKafkaProducerFactory<>(kafkaProperties.buildProducerProperties(null));
+        // Unique par instance : deux instances avec le même préfixe se fenceraient
+        this.producerFactory.setTransactionIdPrefix(transactionIdPrefix + UUID.randomUUID() + "-");
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+    }
+
+    @Bean
+    public NewTopic fraudRequestsTopic() {
+        return TopicBuilder.name(requestTopic).partitions(partitions).build();
+    }
+
+    @Bean
+    public NewTopic fraudDecisionsTopic() {
+        return TopicBuilder.name(decisionTopic).partitions(partitions).build();
+    }
+
+    /**
+     * Lots de max batch-size requêtes, lecture read_committed. Un lot en échec
+     * est annulé (ni réponse, ni audit, offsets non commités) puis rejoué ;
+     * après 3 rejeus, le lot entier part sur fraud-requests.DLT.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, FraudRequest> scoringListenerFactory(
+            @Value("${fraud.scoring.kafka.batch-size:512}") int batchSize,
+            @Value("${fraud.scoring.kafka.concurrency:1}") int concurrency) {
+        Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties(null);
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+        consumerProperties.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        consumerProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        JsonDeserializer<FraudRequest> json = new JsonDeserializer<>(FraudRequest.class, false);
+        DefaultKafkaConsumerFactory<String, FraudRequest> consumerFactory = new DefaultKafkaConsumerFactory<>(
+                consumerProperties, new StringDeserializer(), new ErrorHandlingDeserializer<>(json));
+
+        ConcurrentKafkaListenerContainerFactory<String, FraudRequest> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.getContainerProperties().setKafkaAwareTransactionManager(new KafkaTransactionManager<>(producerFactory));
+        factory.setAfterRollbackProcessor(new DefaultAfterRollbackProcessor<>(
+                new DeadLetterPublishingRecoverer(kafkaTemplate), new FixedBackOff(1000, 3), kafkaTemplate, true));
+        return factory;
+    }
+
+    @Bean
+    public ScoringRequestConsumer scoringRequestConsumer(FraudDecisionService decisionService,
+            MeterRegistry meterRegistry,
+            @Value("${fraud.scoring.kafka.batch-timeout:30s}") Duration batchTimeout) {
+        return new ScoringRequestConsumer(decisionService, kafkaTemplate, decisionTopic, batchTimeout, meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        producerFactory.destroy();
+    }
+}
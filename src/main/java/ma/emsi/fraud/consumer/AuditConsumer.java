@@ -1,39 +1,169 @@
 package ma.emsi.fraud.consumer;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import ma.emsi.fraud.model.FraudCheck;
-import ma.emsi.fraud.repository.FraudCheckRepository;
+import ma.emsi.fraud.repository.FraudCheckBatchWriter;
+import ma.emsi.fraud.service.ClusterStateService;
+import ma.emsi.fraud.service.FraudStatsService;
 import ma.emsi.fraud.service.FraudStreamService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Métriques : fraud.consumer.stage{stage=insert|stats|stream}, taille des lots,
+ * fraud.consumer.record.age (décision -> consommation) et fraud.consumer.lag
+ * (messages restants sur les partitions assignées, lu sans appel au broker).
+ * En mode cluster, les statistiques vont à la partition d'origine de chaque
+ * audit ({@link ClusterStateService}) et le SSE passe par fraud-stream.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class AuditConsumer {
 
-    private final FraudCheckRepository repository;
+    private final FraudCheckBatchWriter batchWriter;
     private final FraudStreamService streamService;
+    private final FraudStatsService statsService;
+    private final ClusterStateService cluster;
+
+    private final Timer insertStage;
+    private final Timer statsStage;
+    private final Timer streamStage;
+    private final DistributionSummary batchSize;
+    private final Timer recordAge;
+    private final AtomicLong lag = new AtomicLong();
+
+    public AuditConsumer(FraudCheckBatchWriter batchWriter, FraudStreamService streamService,
+            FraudStatsService statsService, ObjectProvider<ClusterStateService> cluster, MeterRegistry meterRegistry) {
+        this.batchWriter = batchWriter;
+        this.streamService = streamService;
+        this.statsService = statsService;
+        this.cluster = cluster.getIfAvailable();
+        this.insertStage = stageTimer(meterRegistry, "insert");
+        this.statsStage = stageTimer(meterRegistry, "stats");
+        this.streamStage = stageTimer(meterRegistry, "stream");
+        this.batchSize = DistributionSummary.builder("fraud.consumer.batch.size")
+                .description("Nombre d'audits par lot consommé")
+                .register(meterRegistry);
+        this.recordAge = Timer.builder("fraud.consumer.record.age")
+                .description("Délai entre la décision et la consommation de son audit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("fraud.consumer.lag", lag);
+    }
 
     /**
-     * Listener Kafka qui consomme les messages du topic "fraud-checks"
-     * et les sauvegarde dans PostgreSQL
+     * Listener Kafka (mode batch) qui consomme les messages du topic "fraud-checks"
+     * et les sauvegarde dans PostgreSQL : un INSERT multi-lignes et une
+     * transaction par lot. Une exception remonte au conteneur pour que les
+     * offsets ne soient commités qu'une fois le lot durable.
+     * Un audit non insérable est isolé : les audits qui le précèdent sont
+     * traités, puis BatchListenerFailedException désigne son index pour que
+     * lui seul parte sur la DLT, sans rejeu.
      */
-    @KafkaListener(topics = "fraud-checks", groupId = "fraud-consumer-group")
-    public void consume(@org.springframework.lang.NonNull FraudCheck fraudCheck) {
-        log.info("Received fraud check from Kafka: {}", fraudCheck);
+    @KafkaListener(topics = "fraud-checks", groupId = "fraud-consumer-group",
+            containerFactory = "auditBatchListenerFactory")
+    public void consume(@org.springframework.lang.NonNull List<FraudCheck> fraudChecks,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions, Consumer<?, ?> consumer) {
+        log.debug("Received {} fraud checks from Kafka", fraudChecks.size());
+        batchSize.record(fraudChecks.size());
+        recordLag(consumer);
+
+        int invalid = firstInvalid(fraudChecks);
+        if (invalid < 0) {
+            process(fraudChecks, partitions);
+            return;
+        }
+        if (invalid > 0) {
+            process(fraudChecks.subList(0, invalid), partitions.subList(0, invalid));
+        }
+        throw new BatchListenerFailedException("Invalid fraud check audit at index " + invalid,
+                new IllegalArgumentException("amount, score and risk are required"), invalid);
+    }
+
+    private void process(List<FraudCheck> fraudChecks, List<Integer> partitions) {
+        // Sauvegarder le lot dans la base de données (une transaction)
+        long start = System.nanoTime();
+        List<FraudCheck> saved = batchWriter.insertAll(fraudChecks);
+        start = record(insertStage, start);
+
+        // Statistiques incrémentales (/records/stats)
+        if (cluster != null) {
+            cluster.record(saved, partitions);
+        } else {
+            statsService.record(saved);
+        }
+        start = record(statsStage, start);
+
+        // Broadcast to SSE clients - LIVE UPDATE!
+        if (cluster != null) {
+            cluster.broadcast(saved);
+        } else {
+            saved.forEach(streamService::pushEvent);
+        }
+        record(streamStage, start);
 
-        try {
-            // Sauvegarder dans la base de données
-            FraudCheck saved = repository.save(fraudCheck);
+        LocalDateTime now = LocalDateTime.now();
+        for (FraudCheck check : saved) {
+            if (check.getCreatedAt() != null) {
+                recordAge.record(Duration.between(check.getCreatedAt(), now));
+            }
+        }
+        log.debug("{} fraud checks saved to database", saved.size());
+    }
 
-            // Broadcast to SSE clients - LIVE UPDATE!
-            streamService.pushEvent(saved);
+    private static int firstInvalid(List<FraudCheck> fraudChecks) {
+        for (int i = 0; i < fraudChecks.size(); i++) {
+            if (!FraudCheckBatchWriter.isInsertable(fraudChecks.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-            log.info("✅ Fraud check saved to database with ID: {}", saved.getId());
-        } catch (Exception e) {
-            log.error("❌ Failed to save fraud check to database", e);
+    /**
+     * Lag connu localement par le consommateur (dernier fetch), sans requête au broker
+     */
+    private void recordLag(Consumer<?, ?> consumer) {
+        if (consumer == null) {
+            return;
+        }
+        long total = 0;
+        for (TopicPartition partition : consumer.assignment()) {
+            OptionalLong partitionLag = consumer.currentLag(partition);
+            if (partitionLag.isPresent()) {
+                total += partitionLag.getAsLong();
+            }
         }
+        lag.set(total);
+    }
+
+    private static long record(Timer timer, long start) {
+        long now = System.nanoTime();
+        timer.record(now - start, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("fraud.consumer.stage")
+                .description("Durée de chaque étape du traitement d'un lot d'audits")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,51 @@
+package ma.emsi.fraud.consumer;
+
+import lombok.RequiredArgsConstructor;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.service.ClusterStateService;
+import ma.emsi.fraud.service.FraudStreamService;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mode cluster : chaque instance lit fraud-stream (audits persistés par tous
+ * les propriétaires de partitions) depuis la fin, et le diffuse à ses clients
+ * SSE. /records/stream montre ainsi le trafic du cluster entier.
+ * fraud-stream n'a qu'une partition : son offset sert d'id d'événement SSE,
+ * le même sur toutes les instances, et un client peut reprendre
+ * (Last-Event-ID) sur n'importe laquelle. Partition assignée manuellement,
+ * groupe stable par node-id (commits seulement).
+ */
+@Component
+@ConditionalOnProperty(name = "fraud.cluster.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ClusterStreamRelay implements ConsumerSeekAware {
+
+    private final FraudStreamService streamService;
+
+    @KafkaListener(groupId = "fraud-stream-#{@clusterStateService.nodeId()}",
+            topicPartitions = @org.springframework.kafka.annotation.TopicPartition(topic = ClusterStateService.STREAM_TOPIC,
+                    partitions = "0"),
+            containerFactory = "clusterBroadcastListenerFactory")
+    public void relay(List<FraudCheck> fraudChecks, @Header(KafkaHeaders.OFFSET) List<Long> offsets) {
+        for (int i = 0; i < fraudChecks.size(); i++) {
+            streamService.pushEvent(fraudChecks.get(i), offsets.get(i));
+        }
+    }
+
+    /**
+     * Flux en direct : pas de rattrapage des audits émis pendant l'arrêt
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToEnd(assignments.keySet());
+    }
+}
@@ -0,0 +1,120 @@
+package ma.emsi.fraud.consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.service.ClusterStateService;
+import ma.emsi.fraud.service.VelocityFeatureStore;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Mode cluster : vélocité partagée. Le load balancer répartit le trafic d'une
+ * même IP / email / compte sur toutes les instances ; chacune n'en verrait
+ * qu'une fraction et le burst-factor serait affaibli d'autant.
+ * Chaque transaction comptée localement est publiée sur fraud-velocity (une
+ * partition, lue par toutes les instances depuis la fin) et celles des autres
+ * instances sont ajoutées au {@link VelocityFeatureStore} local, avec leur
+ * horodatage d'origine. Le retard est celui d'un aller-retour Kafka (linger +
+ * fetch), négligeable devant la fenêtre d'une minute du seuil de rafale.
+ * Envoi au mieux, hors event loop, borné : un événement qui ne peut pas partir
+ * est perdu (fraud.velocity.cluster.dropped), jamais la décision.
+ */
+@Component
+@ConditionalOnExpression("${fraud.cluster.enabled:false} and ${fraud.cluster.shared-velocity:true}")
+@Slf4j
+public class ClusterVelocityRelay implements ConsumerSeekAware {
+
+    private final VelocityFeatureStore velocityStore;
+    private final KafkaTemplate<Object, Object> kafkaTemplate;
+    private final Semaphore inFlight;
+    private final Scheduler sendScheduler = Schedulers.newSingle("velocity-send", true);
+    private final Counter dropped;
+
+    public ClusterVelocityRelay(VelocityFeatureStore velocityStore, KafkaTemplate<Object, Object> kafkaTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${fraud.cluster.velocity-max-in-flight:10000}") int maxInFlight) {
+        this.velocityStore = velocityStore;
+        this.kafkaTemplate = kafkaTemplate;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.dropped = Counter.builder("fraud.velocity.cluster.dropped")
+                .description("Transactions non diffusées aux autres instances (envois saturés ou en échec)")
+                .register(meterRegistry);
+        velocityStore.replicateTo(this::publish);
+    }
+
+    private void publish(VelocityFeatureStore.VelocityEvent event) {
+        if (!inFlight.tryAcquire()) {
+            dropped.increment();
+            return;
+        }
+        try {
+            // send() peut attendre les métadonnées : jamais sur l'event loop
+            sendScheduler.schedule(() -> send(event));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            dropped.increment();
+        }
+    }
+
+    private void send(VelocityFeatureStore.VelocityEvent event) {
+        try {
+            kafkaTemplate.send(ClusterStateService.VELOCITY_TOPIC, event)
+                    .whenComplete((result, error) -> {
+                        inFlight.release();
+                        if (error != null) {
+                            dropped.increment();
+                            log.debug("Velocity event not replicated: {}", error.getMessage());
+                        }
+                    });
+        } catch (Exception e) {
+            inFlight.release();
+            dropped.increment();
+            log.debug("Velocity event not replicated: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Partition assignée manuellement, groupe stable par node-id (commits
+     * seulement) ; les événements de cette instance sont écartés par le store
+     */
+    @KafkaListener(groupId = "fraud-velocity-#{@clusterStateService.nodeId()}",
+            topicPartitions = @org.springframework.kafka.annotation.TopicPartition(
+                    topic = ClusterStateService.VELOCITY_TOPIC, partitions = "0"),
+            containerFactory = "clusterBroadcastListenerFactory")
+    public void apply(List<VelocityFeatureStore.VelocityEvent> events) {
+        for (VelocityFeatureStore.VelocityEvent event : events) {
+            if (event != null) {
+                velocityStore.recordRemote(event);
+            }
+        }
+    }
+
+    /**
+     * Trafic en direct : l'historique au démarrage vient de fraud.velocity.rebuild
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToEnd(assignments.keySet());
+    }
+
+    @PreDestroy
+    public void close() {
+        velocityStore.replicateTo(null);
+        sendScheduler.disposeGracefully().timeout(Duration.ofSeconds(5)).onErrorComplete().block();
+    }
+}
@@ -0,0 +1,162 @@
+package ma.emsi.fraud.consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudRequest;
+import ma.emsi.fraud.service.AuditPublisher;
+import ma.emsi.fraud.service.FeatureEncoder;
+import ma.emsi.fraud.service.FraudDecisionService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import reactor.core.publisher.Flux;
+
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring Kafka-first : chaque lot de fraud-requests passe par le même
+ * pipeline que /fraud/bulk (une passe ONNX pour le lot, enrichissement borné
+ * des scores incertains) ; réponses et audits sont envoyés par le producteur
+ * transactionnel du conteneur, validés avec les offsets du lot.
+ * La réponse garde la clé de la requête et porte son kafka_correlationId
+ * (ou "partition-offset" si le producteur n'en a pas mis) ; l'audit est clé
+ * par compte comme sur le chemin HTTP ({@link AuditPublisher#key}).
+ * La vélocité n'est pas transactionnelle : un lot annulé puis rejoué par
+ * l'AfterRollbackProcessor n'est compté qu'une fois (dernier offset compté
+ * par partition, en mémoire de l'instance).
+ * Instancié par {@link ma.emsi.fraud.config.StreamScoringConfig}.
+ */
+@Slf4j
+public class ScoringRequestConsumer {
+
+    private final FraudDecisionService decisionService;
+    private final KafkaTemplate<Object, Object> kafkaTemplate;
+    private final String decisionTopic;
+    private final Duration batchTimeout;
+
+    private final DistributionSummary batchSize;
+    private final Timer batchLatency;
+    private final Counter rejected;
+    // Dernier offset dont la vélocité a été comptée, par partition
+    private final Map<TopicPartition, Long> countedOffsets = new ConcurrentHashMap<>();
+
+    public ScoringRequestConsumer(FraudDecisionService decisionService, KafkaTemplate<Object, Object> kafkaTemplate,
+            String decisionTopic, Duration batchTimeout, MeterRegistry meterRegistry) {
+        this.decisionService = decisionService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.decisionTopic = decisionTopic;
+        this.batchTimeout = batchTimeout;
+        this.batchSize = DistributionSummary.builder("fraud.scoring.kafka.batch.size")
+                .description("Requêtes par lot consommé sur fraud-requests")
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("fraud.scoring.kafka.batch.latency")
+                .description("Décision d'un lot fraud-requests, envois compris (hors commit)")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("fraud.scoring.kafka.rejected")
+                .description("Requêtes illisibles ou incomplètes, envoyées sur la DLT")
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(topics = "${fraud.scoring.kafka.request-topic:fraud-requests}",
+            groupId = "${fraud.scoring.kafka.group-id:fraud-scoring-group}",
+            containerFactory = "scoringListenerFactory")
+    public void score(List<ConsumerRecord<String, FraudRequest>> records) {
+        batchSize.record(records.size());
+        long start = System.nanoTime();
+
+        List<ConsumerRecord<String, FraudRequest>> valid = new ArrayList<>(records.size());
+        List<FraudRequest> requests = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, FraudRequest> record : records) {
+            if (isValid(record.value())) {
+                valid.add(record);
+                requests.add(record.value());
+            } else {
+                reject(record);
+            }
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        // decideAll compte la vélocité dès l'appel : les offsets sont marqués avant le bloc
+        Flux<FraudDecisionService.Decision> decided = decisionService.decideAll(requests, false, replayed(valid));
+        valid.forEach(record -> countedOffsets.merge(new TopicPartition(record.topic(), record.partition()),
+                record.offset(), Math::max));
+
+        // Bloquer ici est voulu : thread consommateur, la transaction couvre tout le lot
+        List<FraudDecisionService.Decision> decisions = decided.collectList().block(batchTimeout);
+
+        for (int i = 0; i < decisions.size(); i++) {
+            ConsumerRecord<String, FraudRequest> record = valid.get(i);
+            FraudDecisionService.Decision decision = decisions.get(i);
+
+            ProducerRecord<Object, Object> response = new ProducerRecord<>(decisionTopic, record.key(),
+                    decision.response());
+            response.headers().add(KafkaHeaders.CORRELATION_ID, correlationId(record));
+            kafkaTemplate.send(response);
+            FraudCheck audit = decision.audit();
+            kafkaTemplate.send(AuditPublisher.TOPIC, AuditPublisher.key(audit), audit);
+        }
+        batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Scored {} requests from Kafka", decisions.size());
+    }
+
+    /**
+     * Lignes déjà comptées : rejeu après annulation de la transaction
+     */
+    private BitSet replayed(List<ConsumerRecord<String, FraudRequest>> records) {
+        BitSet replayed = new BitSet(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, FraudRequest> record = records.get(i);
+            Long counted = countedOffsets.get(new TopicPartition(record.topic(), record.partition()));
+            if (counted != null && record.offset() <= counted) {
+                replayed.set(i);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Les features numériques sont obligatoires pour le modèle
+     */
+    static boolean isValid(FraudRequest request) {
+        return FeatureEncoder.isScorable(request);
+    }
+
+    /**
+     * Requête illisible (valeur null après ErrorHandlingDeserializer) ou incomplète :
+     * envoyée sur la DLT dans la transaction, sans bloquer le reste du lot
+     */
+    private void reject(ConsumerRecord<String, FraudRequest> record) {
+        rejected.increment();
+        log.warn("Rejected scoring request {}-{}@{}", record.topic(), record.partition(), record.offset());
+        ProducerRecord<Object, Object> dead = new ProducerRecord<>(record.topic() + ".DLT", null, record.key(),
+                record.value(), record.headers());
+        kafkaTemplate.send(dead);
+    }
+
+    private static byte[] correlationId(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(KafkaHeaders.CORRELATION_ID);
+        if (header != null) {
+            return header.value();
+        }
+        return (record.partition() + "-" + record.offset()).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -2,15 +2,18 @@ package ma.emsi.fraud.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import ma.emsi.fraud.model.FraudCheck;
 import ma.emsi.fraud.model.FraudRequest;
 import ma.emsi.fraud.model.FraudResponse;
-import ma.emsi.fraud.service.EnrichmentService;
-import ma.emsi.fraud.service.MlService;
+import ma.emsi.fraud.service.AdaptiveConcurrencyLimiter;
+import ma.emsi.fraud.service.FraudDecisionService;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
 @RestController
 @RequestMapping("/api/v1/fraud")
@@ -18,77 +21,58 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class FraudController {
 
-    private final EnrichmentService enrichmentService;
-    private final MlService mlService;
-    private final KafkaTemplate<String, FraudCheck> kafkaTemplate;
+    private final FraudDecisionService decisionService;
+    private final AdaptiveConcurrencyLimiter limiter;
 
-    @Value("${fraud.risk.threshold:0.0001}")
-    private double riskThreshold;
-
-    private static final String KAFKA_TOPIC = "fraud-checks";
+    @Value("${fraud.bulk.batch-size:512}")
+    private int bulkBatchSize;
 
     /**
      * Endpoint principal de détection de fraude
-     * Flow: Enrichissement (Async) -> ML (Sync) -> Kafka (Fire-and-Forget) ->
-     * Réponse
+     * Flow: Règles (cas évidents) -> ML (Async, micro-batché) -> Enrichissement
+     * (Async, seulement si le score est incertain) -> Kafka (Async, outbox en
+     * cas d'échec) -> Réponse
+     * En surcharge (AdaptiveConcurrencyLimiter) : sans enrichissement, puis
+     * règles seules, puis 429 immédiat. Le permis est pris à la souscription
+     * et rendu à la fin du même Mono, y compris si check lève une exception.
      */
     @PostMapping("/check")
     public Mono<FraudResponse> checkFraud(@RequestBody FraudRequest request) {
-        log.info("Received fraud check request: {}", request);
-
-        // 1. Appel EnrichmentService (Async avec WebFlux)
-        return enrichmentService.enrich(request.ip(), request.email())
-                .map(enrichment -> {
-                    log.debug("Enrichment result: {}", enrichment);
-
-                    // 2. Appel MlService (Sync) avec 6 features
-                    // Defaults: type=0 (PAYMENT), dest balances = 0.0 if null
-                    int type = request.type() != null ? request.type() : 0;
-                    double oldBalanceDest = request.oldBalanceDest() != null ? request.oldBalanceDest() : 0.0;
-                    double newBalanceDest = request.newBalanceDest() != null ? request.newBalanceDest() : 0.0;
-
-                    float score = mlService.predict(
-                            type,
-                            request.amount(),
-                            request.oldBalance(),
-                            request.newBalance(),
-                            oldBalanceDest,
-                            newBalanceDest);
-
-                    // Déterminer le niveau de risque (seuil configurable)
-                    String risk = score > riskThreshold ? "HIGH" : "LOW";
-
-                    log.info("Fraud score: {}, Risk: {}", score, risk);
-
-                    // 3. Envoi à Kafka (Fire-and-Forget) -> Wrapped in try-catch to ensure API
-                    // response even if Kafka fails
-                    try {
-                        FraudCheck fraudCheck = new FraudCheck();
-                        fraudCheck.setAmount(request.amount());
-                        fraudCheck.setScore(score);
-                        fraudCheck.setRisk(risk);
-                        fraudCheck.setTransactionType(type);
-                        fraudCheck.setOldBalance(request.oldBalance());
-                        fraudCheck.setNewBalance(request.newBalance());
-                        fraudCheck.setOldBalanceDest(oldBalanceDest);
-                        fraudCheck.setNewBalanceDest(newBalanceDest);
-                        fraudCheck.setIpAddress(request.ip());
-                        fraudCheck.setEmail(request.email());
-                        fraudCheck.setCreatedAt(java.time.LocalDateTime.now()); // Set date immediately
-
-                        kafkaTemplate.send(KAFKA_TOPIC, fraudCheck);
-                        log.debug("Sent to Kafka topic: {}", KAFKA_TOPIC);
-                    } catch (Exception kafkaError) {
-                        log.error("Failed to send to Kafka (Non-blocking): {}", kafkaError.getMessage(), kafkaError);
-                    }
+        return Mono.defer(() -> {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+            if (permit.level() == AdaptiveConcurrencyLimiter.Level.REJECT) {
+                return Mono.error(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Fraud check overloaded"));
+            }
+            // Pas de log par requête : traces échantillonnées via fraud.trace.sample-rate
+            return Mono.defer(() -> decisionService.check(request, permit.level()))
+                    .doFinally(signal -> permit.release(signal == SignalType.ON_ERROR))
+                    .doOnError(error -> log.error("Fraud check failed", error))
+                    .onErrorResume(e -> {
+                        log.warn("Returning fallback response due to error: {}", e.getMessage());
+                        return Mono.just(new FraudResponse(-1.0f, "ERROR"));
+                    });
+        });
+    }
 
-                    // 4. Retour immédiat au client
-                    return new FraudResponse(score, risk);
-                })
-                .doOnError(error -> log.error("Fraud check failed", error))
-                .onErrorResume(e -> {
-                    log.warn("Returning fallback response due to error: {}", e.getMessage());
-                    return Mono.just(new FraudResponse(-1.0f, "ERROR"));
-                });
+    /**
+     * Scoring de masse : corps NDJSON (une FraudRequest par ligne) en flux,
+     * réponse NDJSON avec une FraudResponse par ligne, dans le même ordre.
+     * Les lignes sont décidées par lots de fraud.bulk.batch-size (une passe
+     * ONNX par lot), au plus deux lots en mémoire : la lecture du corps suit
+     * le rythme d'écriture de la réponse. offline=true : ni enrichissement ni
+     * audit Kafka (re-scoring, backfill).
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<FraudResponse> checkBulk(@RequestBody Flux<FraudRequest> requests,
+            @RequestParam(defaultValue = "false") boolean offline) {
+        return requests
+                .buffer(bulkBatchSize)
+                .flatMapSequential(chunk -> decisionService.checkBulk(chunk, offline)
+                        .onErrorResume(e -> {
+                            // Une ligne de sortie par ligne d'entrée, même si le lot échoue
+                            log.warn("Bulk chunk of {} rows failed: {}", chunk.size(), e.getMessage());
+                            return Flux.fromIterable(chunk).map(request -> new FraudResponse(-1.0f, "ERROR"));
+                        }), 2);
     }
 }
@@ -0,0 +1,83 @@
+package ma.emsi.fraud.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.service.MlService;
+import ma.emsi.fraud.service.ModelRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Gestion à chaud des versions de modèle (fichiers .onnx de fraud.model.dir).
+ * Les chargements (modèle + warm-up) sont bloquants : exécutés sur boundedElastic.
+ */
+@RestController
+@RequestMapping("/api/v1/models")
+@RequiredArgsConstructor
+@Slf4j
+public class ModelController {
+
+    private final MlService mlService;
+
+    /**
+     * Version active, candidate shadow et fichiers disponibles
+     */
+    @GetMapping
+    public Mono<ModelRegistry.Status> status() {
+        return Mono.fromSupplier(() -> mlService.registry().status());
+    }
+
+    /**
+     * Charge un fichier comme candidate shadow (évaluée sur un échantillon, sans effet sur les réponses)
+     */
+    @PostMapping("/shadow")
+    public Mono<ModelRegistry.ModelInfo> loadShadow(@RequestParam String name) {
+        log.info("Loading shadow model {}", name);
+        return blocking(() -> mlService.registry().loadShadow(name));
+    }
+
+    @DeleteMapping("/shadow")
+    public Mono<ModelRegistry.Status> dropShadow() {
+        return Mono.fromSupplier(() -> {
+            mlService.registry().dropShadow();
+            return mlService.registry().status();
+        });
+    }
+
+    /**
+     * La candidate shadow devient la version active
+     */
+    @PostMapping("/promote")
+    public Mono<ModelRegistry.ModelInfo> promote() {
+        log.info("Promoting shadow model");
+        return blocking(() -> mlService.registry().promoteShadow());
+    }
+
+    /**
+     * Charge, chauffe puis active directement un fichier (rollback compris)
+     */
+    @PostMapping("/active")
+    public Mono<ModelRegistry.ModelInfo> activate(@RequestParam String name) {
+        log.info("Activating model {}", name);
+        return blocking(() -> mlService.registry().activate(name));
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> action) {
+        return Mono.fromCallable(action)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e))
+                .onErrorMap(IllegalStateException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e));
+    }
+}
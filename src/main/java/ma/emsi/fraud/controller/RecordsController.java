@@ -3,16 +3,29 @@ package ma.emsi.fraud.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ma.emsi.fraud.model.FraudCheck;
-import ma.emsi.fraud.repository.FraudCheckRepository;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import ma.emsi.fraud.model.RecordsCursor;
+import ma.emsi.fraud.service.FraudCheckQueryService;
+import ma.emsi.fraud.service.FraudStatsService;
 import ma.emsi.fraud.service.FraudStreamService;
+import ma.emsi.fraud.service.StreamPolicy;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,52 +34,96 @@ import java.util.Map;
 @Slf4j
 public class RecordsController {
 
-    private final FraudCheckRepository repository;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final FraudCheckQueryService queryService;
     private final FraudStreamService streamService;
+    private final FraudStatsService statsService;
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
 
     /**
-     * Get all fraud check records (last 50)
+     * Get fraud check records, most recent first (50 by default).
+     * Pagination keyset : passer la valeur de l'en-tête X-Next-Cursor dans
+     * ?cursor= pour la page suivante. Filtres optionnels : risk,
+     * transactionType (répétable), minScore, maxScore, from, to (ISO-8601).
      */
     @GetMapping
-    public Flux<FraudCheck> getAllRecords() {
-        log.info("Fetching all fraud check records");
-        return Flux.fromIterable(repository.findTop50ByOrderByCreatedAtDesc());
+    public Mono<ResponseEntity<List<FraudCheck>>> getAllRecords(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String risk,
+            @RequestParam(required = false) List<Integer> transactionType,
+            @RequestParam(required = false) Float minScore,
+            @RequestParam(required = false) Float maxScore,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.debug("Fetching fraud check records (cursor={}, risk={}, types={})", cursor, risk, transactionType);
+
+        RecordsCursor after;
+        try {
+            after = cursor != null ? RecordsCursor.decode(cursor) : null;
+        } catch (RuntimeException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e));
+        }
+        int pageSize = Math.min(limit != null && limit > 0 ? limit : DEFAULT_LIMIT, MAX_LIMIT);
+        FraudCheckFilter filter = new FraudCheckFilter(risk, transactionType, minScore, maxScore, from, to);
+
+        return queryService.search(filter, after, pageSize)
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (page.nextCursor() != null) {
+                        response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+                    }
+                    return response.body(page.items());
+                });
     }
 
     /**
      * Stream real-time fraud checks (Server-Sent Events)
      */
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<FraudCheck> streamRecords() {
-        log.info("New client connected to fraud stream");
-        return streamService.getFraudStream();
+    public Flux<ServerSentEvent<?>> streamRecords(
+            @RequestParam(required = false) String policy,
+            @RequestParam(required = false) String risk,
+            @RequestParam(required = false) List<Integer> transactionType,
+            @RequestParam(required = false) Float minScore,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) Long lastEventId) {
+        log.info("New client connected to fraud stream (policy={}, risk={}, minScore={}, types={}, lastEventId={})",
+                policy, risk, minScore, transactionType, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+
+        StreamPolicy streamPolicy;
+        Long resumeAfter;
+        try {
+            streamPolicy = policy != null ? StreamPolicy.parse(policy) : null;
+            // L'en-tête est envoyé automatiquement par EventSource à la reconnexion
+            resumeAfter = lastEventIdHeader != null && !lastEventIdHeader.isBlank()
+                    ? Long.valueOf(lastEventIdHeader.trim()) : lastEventId;
+        } catch (IllegalArgumentException e) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+        }
+        FraudCheckFilter filter = new FraudCheckFilter(risk, transactionType, minScore, null, null, null);
+        return streamService.getFraudStream(streamPolicy, filter, resumeAfter);
     }
 
     /**
-     * Get statistics about fraud checks
+     * Get statistics about fraud checks (maintenues en continu, O(1), sans requête SQL)
      */
     @GetMapping("/stats")
     public Mono<Map<String, Object>> getStatistics() {
-        log.info("Fetching fraud check statistics");
-
-        return Mono.fromCallable(() -> {
-            var allRecords = repository.findAll();
+        log.debug("Fetching fraud check statistics");
 
-            long total = allRecords.size();
-            long highRisk = allRecords.stream().filter(r -> "HIGH".equals(r.getRisk())).count();
-            long lowRisk = allRecords.stream().filter(r -> "LOW".equals(r.getRisk())).count();
-            double avgScore = allRecords.stream()
-                    .mapToDouble(FraudCheck::getScore)
-                    .average()
-                    .orElse(0.0);
+        FraudStatsService.Stats totals = statsService.totals();
 
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("total", total);
-            stats.put("highRisk", highRisk);
-            stats.put("lowRisk", lowRisk);
-            stats.put("avgScore", avgScore);
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", totals.total());
+        stats.put("highRisk", totals.highRisk());
+        stats.put("lowRisk", totals.lowRisk());
+        stats.put("avgScore", totals.avgScore());
+        stats.put("windows", statsService.windows());
 
-            return stats;
-        });
+        return Mono.just(stats);
     }
 }
@@ -0,0 +1,173 @@
+package ma.emsi.fraud.kafka;
+
+import ma.emsi.fraud.model.DecisionPath;
+import ma.emsi.fraud.model.FraudCheck;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Format binaire compact d'un FraudCheck sur le topic fraud-checks.
+ * <pre>
+ * magic (1) | version (1) | présence (2, un bit par champ) | champs présents dans l'ordre :
+ *   id long, amount double, score float, risk str, transactionType int,
+ *   oldBalance double, newBalance double, oldBalanceDest double, newBalanceDest double,
+ *   ipAddress str, email str, accountId str, createdAt long (µs epoch UTC),
+ *   decisionPath str (v2)
+ * str = longueur uint16 + UTF-8
+ * </pre>
+ * Big-endian. Tout changement de disposition doit incrémenter VERSION en
+ * gardant le décodage des versions précédentes : les champs sont seulement
+ * ajoutés en fin, un enregistrement v1 se lit donc avec le décodeur v2.
+ */
+public final class FraudCheckCodec {
+
+    /**
+     * Premier octet d'un enregistrement binaire ; un JSON commence par '{' (0x7B)
+     */
+    public static final byte MAGIC = (byte) 0xFC;
+    public static final byte VERSION = 2;
+
+    private static final int HEADER = 4;
+
+    private static final int ID = 0;
+    private static final int AMOUNT = 1;
+    private static final int SCORE = 2;
+    private static final int RISK = 3;
+    private static final int TRANSACTION_TYPE = 4;
+    private static final int OLD_BALANCE = 5;
+    private static final int NEW_BALANCE = 6;
+    private static final int OLD_BALANCE_DEST = 7;
+    private static final int NEW_BALANCE_DEST = 8;
+    private static final int IP_ADDRESS = 9;
+    private static final int EMAIL = 10;
+    private static final int ACCOUNT_ID = 11;
+    private static final int CREATED_AT = 12;
+    private static final int DECISION_PATH = 13;
+
+    private FraudCheckCodec() {
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(FraudCheck check) {
+        byte[] risk = utf8(check.getRisk());
+        byte[] ip = utf8(check.getIpAddress());
+        byte[] email = utf8(check.getEmail());
+        byte[] accountId = utf8(check.getAccountId());
+        byte[] decisionPath = check.getDecisionPath() != null ? utf8(check.getDecisionPath().name()) : null;
+
+        int presence = 0;
+        int size = HEADER;
+        if (check.getId() != null) { presence |= 1 << ID; size += Long.BYTES; }
+        if (check.getAmount() != null) { presence |= 1 << AMOUNT; size += Double.BYTES; }
+        if (check.getScore() != null) { presence |= 1 << SCORE; size += Float.BYTES; }
+        if (risk != null) { presence |= 1 << RISK; size += Short.BYTES + risk.length; }
+        if (check.getTransactionType() != null) { presence |= 1 << TRANSACTION_TYPE; size += Integer.BYTES; }
+        if (check.getOldBalance() != null) { presence |= 1 << OLD_BALANCE; size += Double.BYTES; }
+        if (check.getNewBalance() != null) { presence |= 1 << NEW_BALANCE; size += Double.BYTES; }
+        if (check.getOldBalanceDest() != null) { presence |= 1 << OLD_BALANCE_DEST; size += Double.BYTES; }
+        if (check.getNewBalanceDest() != null) { presence |= 1 << NEW_BALANCE_DEST; size += Double.BYTES; }
+        if (ip != null) { presence |= 1 << IP_ADDRESS; size += Short.BYTES + ip.length; }
+        if (email != null) { presence |= 1 << EMAIL; size += Short.BYTES + email.length; }
+        if (accountId != null) { presence |= 1 << ACCOUNT_ID; size += Short.BYTES + accountId.length; }
+        if (check.getCreatedAt() != null) { presence |= 1 << CREATED_AT; size += Long.BYTES; }
+        if (decisionPath != null) { presence |= 1 << DECISION_PATH; size += Short.BYTES + decisionPath.length; }
+
+        ByteBuffer out = ByteBuffer.allocate(size)
+                .put(MAGIC)
+                .put(VERSION)
+                .putShort((short) presence);
+        if (check.getId() != null) out.putLong(check.getId());
+        if (check.getAmount() != null) out.putDouble(check.getAmount());
+        if (check.getScore() != null) out.putFloat(check.getScore());
+        if (risk != null) putString(out, risk);
+        if (check.getTransactionType() != null) out.putInt(check.getTransactionType());
+        if (check.getOldBalance() != null) out.putDouble(check.getOldBalance());
+        if (check.getNewBalance() != null) out.putDouble(check.getNewBalance());
+        if (check.getOldBalanceDest() != null) out.putDouble(check.getOldBalanceDest());
+        if (check.getNewBalanceDest() != null) out.putDouble(check.getNewBalanceDest());
+        if (ip != null) putString(out, ip);
+        if (email != null) putString(out, email);
+        if (accountId != null) putString(out, accountId);
+        if (check.getCreatedAt() != null) out.putLong(toEpochMicros(check.getCreatedAt()));
+        if (decisionPath != null) putString(out, decisionPath);
+        return out.array();
+    }
+
+    /**
+     * @throws SerializationException si l'enregistrement n'est pas au format binaire ou est tronqué
+     */
+    public static FraudCheck decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new SerializationException("Not a binary FraudCheck record");
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        in.get();
+        byte version = in.get();
+        if (version < 1 || version > VERSION) {
+            throw new SerializationException("Unsupported FraudCheck codec version " + version);
+        }
+        int presence = in.getShort() & 0xFFFF;
+        try {
+            FraudCheck check = new FraudCheck();
+            if (has(presence, ID)) check.setId(in.getLong());
+            if (has(presence, AMOUNT)) check.setAmount(in.getDouble());
+            if (has(presence, SCORE)) check.setScore(in.getFloat());
+            if (has(presence, RISK)) check.setRisk(getString(in));
+            if (has(presence, TRANSACTION_TYPE)) check.setTransactionType(in.getInt());
+            if (has(presence, OLD_BALANCE)) check.setOldBalance(in.getDouble());
+            if (has(presence, NEW_BALANCE)) check.setNewBalance(in.getDouble());
+            if (has(presence, OLD_BALANCE_DEST)) check.setOldBalanceDest(in.getDouble());
+            if (has(presence, NEW_BALANCE_DEST)) check.setNewBalanceDest(in.getDouble());
+            if (has(presence, IP_ADDRESS)) check.setIpAddress(getString(in));
+            if (has(presence, EMAIL)) check.setEmail(getString(in));
+            if (has(presence, ACCOUNT_ID)) check.setAccountId(getString(in));
+            if (has(presence, CREATED_AT)) check.setCreatedAt(fromEpochMicros(in.getLong()));
+            if (has(presence, DECISION_PATH)) check.setDecisionPath(DecisionPath.valueOf(getString(in)));
+            return check;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Truncated binary FraudCheck record", e);
+        }
+    }
+
+    private static boolean has(int presence, int field) {
+        return (presence & (1 << field)) != 0;
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new SerializationException("String field too long for FraudCheck codec: " + bytes.length);
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static long toEpochMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
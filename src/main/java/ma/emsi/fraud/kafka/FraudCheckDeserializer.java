@@ -0,0 +1,43 @@
+package ma.emsi.fraud.kafka;
+
+import ma.emsi.fraud.model.FraudCheck;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deserializer Kafka : reconnaît le format {@link FraudCheckCodec} à son octet
+ * magique, sinon lit du JSON (anciens enregistrements du topic, producteurs
+ * non migrés). Le JSON sans en-tête de type est lu comme FraudCheck.
+ * spring.kafka.consumer.value-deserializer=ma.emsi.fraud.kafka.FraudCheckDeserializer
+ */
+public class FraudCheckDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> json = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Map<String, Object> jsonConfigs = new HashMap<>(configs);
+        jsonConfigs.putIfAbsent(JsonDeserializer.VALUE_DEFAULT_TYPE, FraudCheck.class.getName());
+        jsonConfigs.putIfAbsent(JsonDeserializer.TRUSTED_PACKAGES, FraudCheck.class.getPackageName());
+        json.configure(jsonConfigs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return FraudCheckCodec.isBinary(data) ? FraudCheckCodec.decode(data) : json.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        return FraudCheckCodec.isBinary(data) ? FraudCheckCodec.decode(data) : json.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
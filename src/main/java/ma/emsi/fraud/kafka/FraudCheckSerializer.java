@@ -0,0 +1,38 @@
+package ma.emsi.fraud.kafka;
+
+import ma.emsi.fraud.model.FraudCheck;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+/**
+ * Serializer Kafka : FraudCheck au format {@link FraudCheckCodec} (ni en-tête
+ * de type ni date en texte), tout autre objet en JSON via JsonSerializer.
+ * spring.kafka.producer.value-serializer=ma.emsi.fraud.kafka.FraudCheckSerializer
+ */
+public class FraudCheckSerializer implements Serializer<Object> {
+
+    private final JsonSerializer<Object> json = new JsonSerializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return data instanceof FraudCheck check ? FraudCheckCodec.encode(check) : json.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        return data instanceof FraudCheck check ? FraudCheckCodec.encode(check) : json.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
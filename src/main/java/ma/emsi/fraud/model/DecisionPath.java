@@ -0,0 +1,32 @@
+package ma.emsi.fraud.model;
+
+/**
+ * Étape du pipeline qui a produit la décision (renvoyée au client et auditée)
+ */
+public enum DecisionPath {
+
+    /**
+     * Pré-filtre : type de transaction que le modèle ne signale pas
+     */
+    RULE_SAFE,
+
+    /**
+     * Pré-filtre : schéma de fraude évident (compte vidé)
+     */
+    RULE_FRAUD,
+
+    /**
+     * Modèle ONNX seul (score hors de la bande incertaine, ou enrichissement indisponible)
+     */
+    MODEL,
+
+    /**
+     * Modèle ONNX dans la bande incertaine, ajusté par l'enrichissement IP/email
+     */
+    MODEL_ENRICHED,
+
+    /**
+     * Surcharge : règles seules, sans modèle (voir AdaptiveConcurrencyLimiter)
+     */
+    RULE_FALLBACK
+}
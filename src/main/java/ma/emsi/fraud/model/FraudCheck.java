@@ -8,7 +8,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "fraud_checks")
+@Table(name = "fraud_checks", indexes = {
+        @Index(name = "idx_fraud_checks_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_fraud_checks_risk_created_at_id", columnList = "risk, created_at, id"),
+        @Index(name = "idx_fraud_checks_type_created_at_id", columnList = "transaction_type, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -48,6 +52,13 @@ public class FraudCheck {
     @Column(name = "email")
     private String email;
 
+    @Column(name = "account_id")
+    private String accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "decision_path", length = 16)
+    private DecisionPath decisionPath;
+
     @com.fasterxml.jackson.annotation.JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,41 @@
+package ma.emsi.fraud.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Filtres de /api/v1/records et de /records/stream (tous optionnels)
+ */
+public record FraudCheckFilter(
+        String risk,
+        List<Integer> transactionTypes,
+        Float minScore,
+        Float maxScore,
+        LocalDateTime from,
+        LocalDateTime to) {
+
+    public static final FraudCheckFilter NONE = new FraudCheckFilter(null, null, null, null, null, null);
+
+    /**
+     * Même sémantique que FraudCheckSpecifications, évaluée en mémoire (flux SSE)
+     */
+    public boolean matches(FraudCheck check) {
+        if (risk != null && !risk.equals(check.getRisk())) {
+            return false;
+        }
+        if (transactionTypes != null && !transactionTypes.isEmpty()
+                && !transactionTypes.contains(check.getTransactionType())) {
+            return false;
+        }
+        if (minScore != null && (check.getScore() == null || check.getScore() < minScore)) {
+            return false;
+        }
+        if (maxScore != null && (check.getScore() == null || check.getScore() > maxScore)) {
+            return false;
+        }
+        if (from != null && (check.getCreatedAt() == null || check.getCreatedAt().isBefore(from))) {
+            return false;
+        }
+        return to == null || (check.getCreatedAt() != null && check.getCreatedAt().isBefore(to));
+    }
+}
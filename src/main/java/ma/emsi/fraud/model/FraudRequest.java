@@ -8,5 +8,11 @@ public record FraudRequest(
                 Double oldBalanceDest,
                 Double newBalanceDest,
                 String ip,
-                String email) {
+                String email,
+                String accountId) {
+
+        public FraudRequest(Double amount, Double oldBalance, Double newBalance, Integer type,
+                        Double oldBalanceDest, Double newBalanceDest, String ip, String email) {
+                this(amount, oldBalance, newBalance, type, oldBalanceDest, newBalanceDest, ip, email, null);
+        }
 }
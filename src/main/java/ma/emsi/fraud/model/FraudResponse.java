@@ -2,5 +2,10 @@ package ma.emsi.fraud.model;
 
 public record FraudResponse(
         Float score,
-        String risk) {
+        String risk,
+        DecisionPath path) {
+
+    public FraudResponse(Float score, String risk) {
+        this(score, risk, null);
+    }
 }
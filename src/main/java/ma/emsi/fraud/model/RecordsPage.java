@@ -0,0 +1,9 @@
+package ma.emsi.fraud.model;
+
+import java.util.List;
+
+/**
+ * Page de fraud checks ; nextCursor est null sur la dernière page
+ */
+public record RecordsPage(List<FraudCheck> items, String nextCursor) {
+}
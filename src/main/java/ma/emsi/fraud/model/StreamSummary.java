@@ -0,0 +1,23 @@
+package ma.emsi.fraud.model;
+
+/**
+ * Résumé d'événements SSE regroupés pour un client lent (politique CONFLATE),
+ * envoyé sous le nom d'événement "summary"
+ */
+public record StreamSummary(long count, long highRisk, float maxScore, long firstEventId, long lastEventId) {
+
+    public static StreamSummary of(long eventId, FraudCheck check) {
+        return new StreamSummary(1, "HIGH".equals(check.getRisk()) ? 1 : 0, score(check), eventId, eventId);
+    }
+
+    public StreamSummary plus(long eventId, FraudCheck check) {
+        return new StreamSummary(count + 1,
+                highRisk + ("HIGH".equals(check.getRisk()) ? 1 : 0),
+                Math.max(maxScore, score(check)),
+                firstEventId, eventId);
+    }
+
+    private static float score(FraudCheck check) {
+        return check.getScore() != null ? check.getScore() : 0f;
+    }
+}
@@ -0,0 +1,114 @@
+package ma.emsi.fraud.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Insertion en masse des FraudCheck : INSERT multi-lignes (VALUES (...), (...))
+ * par paquets, le tout dans une seule transaction par lot Kafka.
+ * GenerationType.IDENTITY empêche le batching JDBC de Hibernate, d'où le
+ * passage par JdbcTemplate ; les ids générés sont relus pour le flux SSE.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class FraudCheckBatchWriter {
+
+    private static final String INSERT_PREFIX = "INSERT INTO fraud_checks (amount, score, risk, transaction_type, "
+            + "old_balance, new_balance, old_balance_dest, new_balance_dest, ip_address, email, account_id, decision_path, "
+            + "created_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // 13 paramètres par ligne : reste sous la limite de 65535 paramètres de PostgreSQL
+    @Value("${fraud.audit.insert-chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Colonnes NOT NULL renseignées (amount, score, risk) : un audit qui ne
+     * l'est pas ferait échouer l'INSERT multi-lignes de tout son lot
+     */
+    public static boolean isInsertable(FraudCheck check) {
+        return check != null && check.getAmount() != null && check.getScore() != null
+                && check.getRisk() != null;
+    }
+
+    /**
+     * Insère tous les FraudCheck en une transaction et renseigne leurs ids
+     *
+     * @return les mêmes instances, avec id et createdAt renseignés
+     */
+    @Transactional
+    public List<FraudCheck> insertAll(List<FraudCheck> fraudChecks) {
+        for (int from = 0; from < fraudChecks.size(); from += chunkSize) {
+            insertChunk(fraudChecks.subList(from, Math.min(from + chunkSize, fraudChecks.size())));
+        }
+        return fraudChecks;
+    }
+
+    private void insertChunk(List<FraudCheck> chunk) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + chunk.size() * (ROW_PLACEHOLDERS.length() + 2))
+                .append(INSERT_PREFIX);
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(ROW_PLACEHOLDERS);
+        }
+
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(), new String[] { "id" });
+            int p = 1;
+            for (FraudCheck check : chunk) {
+                if (check.getCreatedAt() == null) {
+                    check.setCreatedAt(LocalDateTime.now());
+                }
+                ps.setDouble(p++, check.getAmount());
+                ps.setFloat(p++, check.getScore());
+                ps.setString(p++, check.getRisk());
+                setNullable(ps, p++, check.getTransactionType(), Types.INTEGER);
+                setNullable(ps, p++, check.getOldBalance(), Types.DOUBLE);
+                setNullable(ps, p++, check.getNewBalance(), Types.DOUBLE);
+                setNullable(ps, p++, check.getOldBalanceDest(), Types.DOUBLE);
+                setNullable(ps, p++, check.getNewBalanceDest(), Types.DOUBLE);
+                setNullable(ps, p++, check.getIpAddress(), Types.VARCHAR);
+                setNullable(ps, p++, check.getEmail(), Types.VARCHAR);
+                setNullable(ps, p++, check.getAccountId(), Types.VARCHAR);
+                setNullable(ps, p++, check.getDecisionPath() != null ? check.getDecisionPath().name() : null,
+                        Types.VARCHAR);
+                ps.setTimestamp(p++, Timestamp.valueOf(check.getCreatedAt()));
+            }
+            return ps;
+        }, keys);
+
+        List<Map<String, Object>> generated = keys.getKeyList();
+        for (int i = 0; i < chunk.size() && i < generated.size(); i++) {
+            Object id = generated.get(i).values().iterator().next();
+            chunk.get(i).setId(((Number) id).longValue());
+        }
+        log.debug("Inserted {} fraud checks in one statement", chunk.size());
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Object value, int sqlType)
+            throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+}
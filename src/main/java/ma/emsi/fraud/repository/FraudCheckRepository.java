@@ -2,15 +2,26 @@ package ma.emsi.fraud.repository;
 
 import ma.emsi.fraud.model.FraudCheck;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface FraudCheckRepository extends JpaRepository<FraudCheck, Long> {
+public interface FraudCheckRepository extends JpaRepository<FraudCheck, Long>, JpaSpecificationExecutor<FraudCheck> {
 
     /**
      * Find last 50 fraud checks ordered by creation date (most recent first)
      */
     List<FraudCheck> findTop50ByOrderByCreatedAtDesc();
+
+    /**
+     * Total, HIGH, LOW et somme des scores en une seule requête d'agrégat
+     */
+    @Query("SELECT new ma.emsi.fraud.repository.RiskAggregate(COUNT(f), "
+            + "SUM(CASE WHEN f.risk = 'HIGH' THEN 1L ELSE 0L END), "
+            + "SUM(CASE WHEN f.risk = 'LOW' THEN 1L ELSE 0L END), "
+            + "SUM(f.score * 1.0)) FROM FraudCheck f")
+    RiskAggregate aggregateByRisk();
 }
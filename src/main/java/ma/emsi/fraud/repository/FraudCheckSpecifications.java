@@ -0,0 +1,60 @@
+package ma.emsi.fraud.repository;
+
+import jakarta.persistence.criteria.Predicate;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import ma.emsi.fraud.model.RecordsCursor;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Critères de recherche des FraudCheck, alignés sur les index composites
+ * (created_at, id), (risk, created_at, id) et (transaction_type, created_at, id)
+ */
+public final class FraudCheckSpecifications {
+
+    private FraudCheckSpecifications() {
+    }
+
+    /**
+     * Filtres + position keyset : lignes strictement "avant" le curseur dans
+     * l'ordre (created_at DESC, id DESC). Pas d'OFFSET : coût constant quelle
+     * que soit la profondeur de la page.
+     */
+    public static Specification<FraudCheck> matching(FraudCheckFilter filter, RecordsCursor cursor) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (filter.risk() != null) {
+                predicates.add(cb.equal(root.get("risk"), filter.risk()));
+            }
+            if (filter.transactionTypes() != null && !filter.transactionTypes().isEmpty()) {
+                predicates.add(root.get("transactionType").in(filter.transactionTypes()));
+            }
+            if (filter.minScore() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("score"), filter.minScore()));
+            }
+            if (filter.maxScore() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("score"), filter.maxScore()));
+            }
+            if (filter.from() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.<LocalDateTime>get("createdAt"), filter.from()));
+            }
+            if (filter.to() != null) {
+                predicates.add(cb.lessThan(root.<LocalDateTime>get("createdAt"), filter.to()));
+            }
+            if (cursor != null) {
+                // created_at <= c AND (created_at < c OR id < c.id) : borne d'index + départage
+                predicates.add(cb.lessThanOrEqualTo(root.<LocalDateTime>get("createdAt"), cursor.createdAt()));
+                predicates.add(cb.or(
+                        cb.lessThan(root.<LocalDateTime>get("createdAt"), cursor.createdAt()),
+                        cb.lessThan(root.<Long>get("id"), cursor.id())));
+            }
+
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package ma.emsi.fraud.repository;
+
+/**
+ * Agrégat SQL de la table fraud_checks (amorçage des statistiques)
+ */
+public record RiskAggregate(Long total, Long highRisk, Long lowRisk, Double scoreSum) {
+}
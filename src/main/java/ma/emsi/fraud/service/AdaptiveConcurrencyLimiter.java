@@ -0,0 +1,183 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limite adaptative (AIMD) du nombre de /fraud/check en cours, pilotée par
+ * la latence mesurée du pipeline :
+ * - réponse plus lente que latency-target, ou en erreur : limite x backoff-ratio
+ *   (au plus une fois par latency-target, comme TCP une fois par RTT) ;
+ * - sinon, si au moins la moitié de la limite est utilisée : +1 par "limite" réponses.
+ * L'occupation (en cours / limite) choisit le niveau de dégradation :
+ * FULL, puis SKIP_ENRICHMENT, puis RULES_ONLY, puis REJECT (429 immédiat).
+ * Métriques : fraud.overload.requests{level}, fraud.overload.limit, fraud.overload.in-flight.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Niveau de service accordé à une requête
+     */
+    public enum Level {
+        FULL, SKIP_ENRICHMENT, RULES_ONLY, REJECT
+    }
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    private final double skipEnrichmentAt;
+    private final double rulesOnlyAt;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private long lastDecrease;
+
+    private final Map<Level, Counter> requests = new EnumMap<>(Level.class);
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+            @Value("${fraud.overload.enabled:true}") boolean enabled,
+            @Value("${fraud.overload.initial-limit:64}") int initialLimit,
+            @Value("${fraud.overload.min-limit:8}") int minLimit,
+            @Value("${fraud.overload.max-limit:2048}") int maxLimit,
+            @Value("${fraud.overload.latency-target:500ms}") Duration latencyTarget,
+            @Value("${fraud.overload.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${fraud.overload.skip-enrichment-at:0.7}") double skipEnrichmentAt,
+            @Value("${fraud.overload.rules-only-at:0.9}") double rulesOnlyAt) {
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.skipEnrichmentAt = skipEnrichmentAt;
+        this.rulesOnlyAt = rulesOnlyAt;
+        this.lastDecrease = System.nanoTime() - latencyTargetNanos;
+
+        for (Level level : Level.values()) {
+            requests.put(level, Counter.builder("fraud.overload.requests")
+                    .description("Requêtes /fraud/check par niveau de dégradation")
+                    .tag("level", level.name())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("fraud.overload.limit", this, AdaptiveConcurrencyLimiter::limit)
+                .description("Limite adaptative de requêtes en cours")
+                .register(meterRegistry);
+        meterRegistry.gauge("fraud.overload.in-flight", inFlight);
+        log.info("Adaptive concurrency limit {} (initial {}, latency target {})",
+                enabled ? "enabled" : "disabled", initialLimit, latencyTarget);
+    }
+
+    /**
+     * Admet la requête à un niveau donné ; un permis REJECT n'est pas compté
+     * en cours et n'a pas à être rendu
+     */
+    public Permit acquire() {
+        if (!enabled) {
+            return admit(Level.FULL, inFlight.incrementAndGet());
+        }
+        for (;;) {
+            // Niveau décidé sur la valeur échangée : deux requêtes ne peuvent pas
+            // être admises sur la même place libre
+            int current = inFlight.get();
+            double utilization = current / limit;
+            Level level = utilization >= 1.0 ? Level.REJECT
+                    : utilization >= rulesOnlyAt ? Level.RULES_ONLY
+                    : utilization >= skipEnrichmentAt ? Level.SKIP_ENRICHMENT
+                    : Level.FULL;
+            if (level == Level.REJECT) {
+                requests.get(level).increment();
+                return new Permit(level, 0, 0);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return admit(level, current + 1);
+            }
+        }
+    }
+
+    private Permit admit(Level level, int inFlightAtStart) {
+        requests.get(level).increment();
+        return new Permit(level, System.nanoTime(), inFlightAtStart);
+    }
+
+    /**
+     * Fin d'une requête admise. Les réponses RULES_ONLY (sans modèle) ne
+     * renseignent pas sur la capacité et ne font pas varier la limite.
+     */
+    void release(Permit permit, boolean failed) {
+        inFlight.decrementAndGet();
+        if (!enabled || permit.level() == Level.RULES_ONLY) {
+            return;
+        }
+        long now = System.nanoTime();
+        onSample(now, now - permit.startNanos(), permit.inFlightAtStart(), failed);
+    }
+
+    synchronized void onSample(long nowNanos, long latencyNanos, int inFlightAtStart, boolean failed) {
+        if (failed || latencyNanos > latencyTargetNanos) {
+            if (nowNanos - lastDecrease >= latencyTargetNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = nowNanos;
+            }
+        } else if (inFlightAtStart * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    public double limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Droit d'exécuter une requête au niveau {@code level}
+     */
+    public final class Permit {
+
+        private final Level level;
+        private final long startNanos;
+        private final int inFlightAtStart;
+
+        private Permit(Level level, long startNanos, int inFlightAtStart) {
+            this.level = level;
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public Level level() {
+            return level;
+        }
+
+        long startNanos() {
+            return startNanos;
+        }
+
+        int inFlightAtStart() {
+            return inFlightAtStart;
+        }
+
+        /**
+         * À appeler une seule fois, à la fin de la requête (succès, erreur ou annulation)
+         */
+        public void release(boolean failed) {
+            if (level != Level.REJECT) {
+                AdaptiveConcurrencyLimiter.this.release(this, failed);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package ma.emsi.fraud.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbox locale des audits qui n'ont pas pu partir sur Kafka : une ligne JSON
+ * par FraudCheck dans des fichiers .ndjson. Les écritures passent par le
+ * thread "audit-outbox" (jamais le thread réseau du producteur ni l'event loop).
+ * Périodiquement, le fichier courant est fermé puis rejoué ; les audits
+ * encore en échec sont réécrits dans un nouveau fichier.
+ */
+@Component
+@Slf4j
+public class AuditOutbox {
+
+    private static final String SUFFIX = ".ndjson";
+
+    private final KafkaTemplate<String, FraudCheck> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final long sendTimeoutMs;
+    private final Scheduler ioScheduler = Schedulers.newSingle("audit-outbox", true);
+    private final AtomicLong pending = new AtomicLong();
+
+    // Protégés par this
+    private BufferedWriter writer;
+    private long fileSequence;
+
+    public AuditOutbox(KafkaTemplate<String, FraudCheck> kafkaTemplate, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${fraud.audit.outbox.dir:data/audit-outbox}") String directory,
+            @Value("${fraud.audit.outbox.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.directory = Path.of(directory);
+        this.sendTimeoutMs = sendTimeoutMs;
+        meterRegistry.gauge("fraud.audit.outbox.pending", pending);
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(directory);
+        long leftover = 0;
+        for (Path file : outboxFiles()) {
+            try (var lines = Files.lines(file)) {
+                leftover += lines.count();
+            }
+        }
+        pending.set(leftover);
+        if (leftover > 0) {
+            log.warn("Audit outbox contains {} unsent records from a previous run", leftover);
+        }
+    }
+
+    /**
+     * Dépose un audit dans l'outbox, de façon asynchrone ; ne lève jamais
+     * (un échec d'écriture est journalisé comme perte par write)
+     */
+    public void spool(FraudCheck fraudCheck) {
+        try {
+            ioScheduler.schedule(() -> write(List.of(fraudCheck)));
+        } catch (RejectedExecutionException e) {
+            // Outbox fermée (arrêt en cours) : écriture synchrone sur le thread appelant
+            try {
+                write(List.of(fraudCheck));
+            } catch (UncheckedIOException lost) {
+                // Déjà journalisé par write
+            }
+        }
+    }
+
+    long pending() {
+        return pending.get();
+    }
+
+    /**
+     * Rejoue les fichiers de l'outbox sur Kafka
+     */
+    @Scheduled(initialDelayString = "${fraud.audit.outbox.retry-interval-ms:30000}",
+            fixedDelayString = "${fraud.audit.outbox.retry-interval-ms:30000}")
+    public void retry() {
+        List<Path> files;
+        synchronized (this) {
+            closeWriter(); // les dépôts suivants vont dans un nouveau fichier
+            files = outboxFiles();
+        }
+        for (Path file : files) {
+            retryFile(file);
+        }
+    }
+
+    private void retryFile(Path file) {
+        List<FraudCheck> checks = new ArrayList<>();
+        // Lignes illisibles : comptées dans pending par init(), retirées avec le fichier
+        int dropped = 0;
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    checks.add(objectMapper.readValue(line, FraudCheck.class));
+                } catch (IOException e) {
+                    dropped++;
+                    log.error("Dropping unreadable audit outbox line in {}: {}", file.getFileName(), line);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Cannot read audit outbox file {}", file, e);
+            return;
+        }
+
+        List<CompletableFuture<?>> sends = new ArrayList<>(checks.size());
+        for (FraudCheck check : checks) {
+            sends.add(kafkaTemplate.send(AuditPublisher.TOPIC, AuditPublisher.key(check), check));
+        }
+        List<FraudCheck> stillFailing = new ArrayList<>();
+        for (int i = 0; i < sends.size(); i++) {
+            try {
+                sends.get(i).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                stillFailing.add(checks.get(i));
+            }
+        }
+
+        try {
+            if (!stillFailing.isEmpty()) {
+                write(stillFailing);
+            }
+            Files.delete(file);
+            pending.addAndGet(-(checks.size() + dropped));
+            log.info("Audit outbox {}: {} records replayed, {} still failing, {} dropped",
+                    file.getFileName(), checks.size() - stillFailing.size(), stillFailing.size(), dropped);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Cannot finish replay of audit outbox file {}", file, e);
+        }
+    }
+
+    private synchronized void write(List<FraudCheck> checks) {
+        try {
+            if (writer == null) {
+                Path file = directory.resolve("audit-" + System.currentTimeMillis() + "-" + fileSequence++ + SUFFIX);
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (FraudCheck check : checks) {
+                writer.write(objectMapper.writeValueAsString(check));
+                writer.newLine();
+            }
+            writer.flush();
+            pending.addAndGet(checks.size());
+        } catch (IOException e) {
+            log.error("❌ Cannot write {} audit records to outbox, they are lost", checks.size(), e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Path> outboxFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.error("Cannot list audit outbox directory {}", directory, e);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Cannot close audit outbox file", e);
+            }
+            writer = null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        // Laisse finir les dépôts en file avant de fermer le fichier
+        ioScheduler.disposeGracefully().timeout(Duration.ofSeconds(5)).onErrorComplete().block();
+        synchronized (this) {
+            closeWriter();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Publication des audits FraudCheck sur Kafka, sans jamais bloquer l'event loop.
+ * Le send() (qui peut attendre les métadonnées ou buffer.memory) s'exécute sur
+ * le thread "audit-send" ; le nombre d'envois non acquittés est borné et tout
+ * envoi refusé ou en échec part dans {@link AuditOutbox} pour être rejoué.
+ * Clé = compte, sinon IP : l'ordre est garanti par client (même partition).
+ */
+@Service
+@Slf4j
+public class AuditPublisher {
+
+    public static final String TOPIC = "fraud-checks";
+
+    private final KafkaTemplate<String, FraudCheck> kafkaTemplate;
+    private final AuditOutbox outbox;
+    private final Semaphore inFlight;
+    private final Scheduler sendScheduler = Schedulers.newSingle("audit-send", true);
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter shed;
+
+    public AuditPublisher(KafkaTemplate<String, FraudCheck> kafkaTemplate, AuditOutbox outbox,
+            MeterRegistry meterRegistry, @Value("${fraud.audit.max-in-flight:10000}") int maxInFlight) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.outbox = outbox;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        this.sent = Counter.builder("fraud.audit.sent")
+                .description("Audits acquittés par Kafka")
+                .register(meterRegistry);
+        this.failed = Counter.builder("fraud.audit.failed")
+                .description("Audits en échec d'envoi, déposés dans l'outbox")
+                .register(meterRegistry);
+        this.shed = Counter.builder("fraud.audit.shed")
+                .description("Audits déposés dans l'outbox car trop d'envois en cours")
+                .register(meterRegistry);
+        meterRegistry.gauge("fraud.audit.in-flight", inFlight, s -> maxInFlight - s.availablePermits());
+    }
+
+    /**
+     * Confie l'audit au producteur et complète aussitôt, sans attendre
+     * l'acquittement du broker. Ne produit jamais d'erreur : un audit qui ne
+     * peut pas partir maintenant est déposé dans l'outbox.
+     */
+    public Mono<Void> publish(FraudCheck fraudCheck) {
+        return Mono.fromRunnable(() -> {
+            if (!inFlight.tryAcquire()) {
+                // Broker trop lent : on déborde sur disque plutôt qu'en mémoire
+                shed.increment();
+                outbox.spool(fraudCheck);
+                return;
+            }
+            try {
+                sendScheduler.schedule(() -> send(fraudCheck));
+            } catch (RejectedExecutionException e) {
+                // Scheduler arrêté (shutdown) : le permis est rendu, l'audit part dans l'outbox
+                inFlight.release();
+                spoolFailed(fraudCheck, e);
+            }
+        });
+    }
+
+    private void send(FraudCheck fraudCheck) {
+        try {
+            kafkaTemplate.send(TOPIC, key(fraudCheck), fraudCheck)
+                    .whenComplete((result, error) -> {
+                        inFlight.release();
+                        if (error == null) {
+                            sent.increment();
+                        } else {
+                            spoolFailed(fraudCheck, error);
+                        }
+                    });
+            log.debug("Sent to Kafka topic: {}", TOPIC);
+        } catch (Exception e) {
+            inFlight.release();
+            spoolFailed(fraudCheck, e);
+        }
+    }
+
+    private void spoolFailed(FraudCheck fraudCheck, Throwable error) {
+        failed.increment();
+        log.warn("Kafka audit send failed, spooling to outbox: {}", error.getMessage());
+        outbox.spool(fraudCheck);
+    }
+
+    /**
+     * Clé de partition : compte si connu, sinon IP (null = round-robin).
+     * Commune à tous les producteurs d'audits, pour qu'un compte reste sur la
+     * partition qui porte ses statistiques en mode cluster.
+     */
+    public static String key(FraudCheck fraudCheck) {
+        return fraudCheck.getAccountId() != null ? fraudCheck.getAccountId() : fraudCheck.getIpAddress();
+    }
+
+    @PreDestroy
+    public void close() {
+        sendScheduler.disposeGracefully().timeout(Duration.ofSeconds(5)).onErrorComplete().block();
+    }
+}
@@ -0,0 +1,294 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.repository.FraudCheckRepository;
+import ma.emsi.fraud.repository.RiskAggregate;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mode cluster (fraud.cluster.enabled=true) : les audits sont clés par compte
+ * (ou IP), donc chaque partition de fraud-checks n'est consommée que par
+ * l'instance à qui le groupe fraud-consumer-group l'a assignée. Cette instance
+ * est seule propriétaire des fenêtres glissantes de la partition.
+ * <ul>
+ *   <li>Les fenêtres de chaque partition possédée sont publiées périodiquement
+ *       sur le topic compacté fraud-cluster-state (clé = partition), et de
+ *       façon synchrone quand la partition est retirée (rebalance).</li>
+ *   <li>Toutes les instances lisent ce topic depuis le début : /records/stats
+ *       somme les fenêtres locales et les derniers états des autres partitions.</li>
+ *   <li>Le nouveau propriétaire d'une partition reprend son dernier état publié
+ *       (après avoir lu le topic jusqu'à sa fin, borné par handover-timeout).</li>
+ *   <li>Les audits persistés sont republiés sur fraud-stream, lu par toutes
+ *       les instances pour /records/stream (voir ClusterStreamRelay).</li>
+ *   <li>Les compteurs de vélocité sont partagés via fraud-velocity (voir
+ *       ClusterVelocityRelay), sauf si fraud.cluster.shared-velocity=false.</li>
+ * </ul>
+ * Les totaux depuis l'origine viennent de l'agrégat SQL, rafraîchi
+ * périodiquement : la base est déjà l'état partagé.
+ */
+@Service
+@ConditionalOnProperty(name = "fraud.cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterStateService {
+
+    public static final String STATE_TOPIC = "fraud-cluster-state";
+    public static final String STREAM_TOPIC = "fraud-stream";
+    public static final String VELOCITY_TOPIC = "fraud-velocity";
+
+    private final KafkaTemplate<Object, Object> kafkaTemplate;
+    private final FraudCheckRepository repository;
+    private final String nodeId;
+    private final Duration handoverTimeout;
+
+    private final Map<Integer, Map<String, RollingWindow>> owned = new ConcurrentHashMap<>();
+    private final Map<Integer, PartitionState> remote = new ConcurrentHashMap<>();
+    private volatile long stateOffset;
+    private volatile FraudStatsService.Stats totals = FraudStatsService.Stats.EMPTY;
+    private final ConsumerAwareRebalanceListener handover = new Handover();
+
+    public ClusterStateService(KafkaTemplate<Object, Object> kafkaTemplate, FraudCheckRepository repository,
+            MeterRegistry meterRegistry,
+            @Value("${fraud.cluster.node-id:}") String nodeId,
+            @Value("${fraud.cluster.handover-timeout:5s}") Duration handoverTimeout,
+            @Value("${fraud.cluster.shared-velocity:true}") boolean sharedVelocity) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.repository = repository;
+        this.nodeId = nodeId.isBlank() ? hostName() : nodeId;
+        this.handoverTimeout = handoverTimeout;
+        meterRegistry.gauge("fraud.cluster.partitions.owned", owned, Map::size);
+        log.info("Cluster mode enabled, node {}", this.nodeId);
+        if (!sharedVelocity) {
+            log.warn("⚠️ fraud.cluster.shared-velocity=false: velocity counters are per node, a burst spread "
+                    + "over N nodes is seen at about 1/N of its rate by the burst threshold");
+        }
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * node-id par défaut : stable d'un redémarrage à l'autre (nom du pod),
+     * pour ne pas laisser un groupe orphelin sur le broker à chaque démarrage
+     */
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * Listener de rebalance du conteneur d'audit (pas un bean : Spring Boot
+     * l'appliquerait à toutes les factories de listeners)
+     */
+    public ConsumerAwareRebalanceListener rebalanceListener() {
+        return handover;
+    }
+
+    /**
+     * Lot persisté par AuditConsumer ; {@code partitions} donne la partition de
+     * chaque audit (même ordre)
+     */
+    public void record(List<FraudCheck> fraudChecks, List<Integer> partitions) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < fraudChecks.size(); i++) {
+            FraudCheck check = fraudChecks.get(i);
+            Map<String, RollingWindow> windows = owned.computeIfAbsent(partitions.get(i),
+                    partition -> FraudStatsService.newWindows());
+            long high = "HIGH".equals(check.getRisk()) ? 1 : 0;
+            for (RollingWindow window : windows.values()) {
+                window.add(now, 1, high, check.getScore());
+            }
+        }
+    }
+
+    /**
+     * Republie les audits persistés (avec leur id) pour le SSE de toutes les instances
+     */
+    public void broadcast(List<FraudCheck> fraudChecks) {
+        for (FraudCheck check : fraudChecks) {
+            kafkaTemplate.send(STREAM_TOPIC, AuditPublisher.key(check), check);
+        }
+    }
+
+    public FraudStatsService.Stats totals() {
+        return totals;
+    }
+
+    /**
+     * Fenêtres fusionnées : état local des partitions possédées, dernier état
+     * publié pour les autres
+     */
+    public Map<String, FraudStatsService.Stats> windows() {
+        long now = System.currentTimeMillis();
+        Map<String, FraudStatsService.Stats> result = new LinkedHashMap<>();
+        for (String name : FraudStatsService.WINDOWS) {
+            FraudStatsService.Stats stats = FraudStatsService.Stats.EMPTY;
+            for (Map<String, RollingWindow> windows : owned.values()) {
+                stats = stats.plus(windows.get(name).snapshot(now));
+            }
+            for (PartitionState state : remote.values()) {
+                if (!owned.containsKey(state.partition())) {
+                    stats = stats.plus(RollingWindow.restore(state.windows().get(name)).snapshot(now));
+                }
+            }
+            result.put(name, stats);
+        }
+        return result;
+    }
+
+    /**
+     * Totaux cluster : la base contient les audits de toutes les instances
+     */
+    @Scheduled(fixedDelayString = "${fraud.cluster.totals-refresh-ms:10000}")
+    public void refreshTotals() {
+        RiskAggregate aggregate = repository.aggregateByRisk();
+        if (aggregate == null || aggregate.total() == null) {
+            return;
+        }
+        totals = FraudStatsService.Stats.of(aggregate.total(), nullToZero(aggregate.highRisk()),
+                nullToZero(aggregate.lowRisk()), aggregate.scoreSum() != null ? aggregate.scoreSum() : 0.0);
+    }
+
+    @Scheduled(initialDelayString = "${fraud.cluster.publish-interval-ms:5000}",
+            fixedDelayString = "${fraud.cluster.publish-interval-ms:5000}")
+    public void publishOwned() {
+        owned.keySet().forEach(this::publish);
+    }
+
+    /**
+     * Lecture du topic d'état depuis le début à chaque démarrage : partition
+     * assignée manuellement, sans rebalance ; le groupe (stable, par node-id)
+     * ne sert qu'aux commits. Les états publiés par l'instance elle-même sont
+     * gardés aussi : ils ne comptent dans la vue qu'une fois la partition cédée.
+     */
+    @KafkaListener(groupId = "fraud-state-#{__listener.nodeId()}",
+            topicPartitions = @org.springframework.kafka.annotation.TopicPartition(topic = STATE_TOPIC,
+                    partitionOffsets = @PartitionOffset(partition = "0", initialOffset = "0")),
+            containerFactory = "clusterBroadcastListenerFactory")
+    public void onState(List<PartitionState> states, @Header(KafkaHeaders.OFFSET) List<Long> offsets) {
+        for (PartitionState state : states) {
+            if (state != null) {
+                remote.put(state.partition(), state);
+            }
+        }
+        stateOffset = offsets.get(offsets.size() - 1) + 1;
+    }
+
+    private void awaitState(Consumer<?, ?> consumer) {
+        TopicPartition stateTopic = new TopicPartition(STATE_TOPIC, 0);
+        try {
+            long end = consumer.endOffsets(List.of(stateTopic), handoverTimeout).getOrDefault(stateTopic, 0L);
+            long deadline = System.nanoTime() + handoverTimeout.toNanos();
+            while (stateOffset < end && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+            if (stateOffset < end) {
+                log.warn("Cluster state not caught up after {} ({} < {}), taking over with partial state",
+                        handoverTimeout, stateOffset, end);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Could not read cluster state end offset: {}", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<?> publish(int partition) {
+        Map<String, RollingWindow> windows = owned.get(partition);
+        if (windows == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<String, RollingWindow.State> states = new HashMap<>();
+        windows.forEach((name, window) -> states.put(name, window.state()));
+        PartitionState state = new PartitionState(partition, nodeId, System.currentTimeMillis(), states);
+        return kafkaTemplate.send(STATE_TOPIC, String.valueOf(partition), state)
+                .orTimeout(handoverTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.warn("Could not publish state of partition {}: {}", partition, e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Passage de relais : publication synchrone à la révocation, reprise à l'assignation
+     */
+    private class Handover implements ConsumerAwareRebalanceListener {
+
+        @Override
+        public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+            for (TopicPartition partition : partitions) {
+                if (owned.containsKey(partition.partition())) {
+                    publish(partition.partition()).join();
+                }
+                owned.remove(partition.partition());
+            }
+            log.info("Handed over partitions {}", partitions);
+        }
+
+        @Override
+        public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+            partitions.forEach(partition -> owned.remove(partition.partition()));
+            log.warn("Lost partitions {} without handover", partitions);
+        }
+
+        /**
+         * Reprise : attendre d'avoir lu le topic d'état jusqu'à sa fin actuelle,
+         * puis repartir du dernier état publié de chaque partition reçue
+         */
+        @Override
+        public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+            awaitState(consumer);
+            for (TopicPartition partition : partitions) {
+                PartitionState state = remote.get(partition.partition());
+                owned.put(partition.partition(), state != null ? restore(state) : FraudStatsService.newWindows());
+            }
+            log.info("Took over partitions {}", partitions);
+        }
+    }
+
+    private static Map<String, RollingWindow> restore(PartitionState state) {
+        Map<String, RollingWindow> windows = new HashMap<>();
+        state.windows().forEach((name, window) -> windows.put(name, RollingWindow.restore(window)));
+        return windows;
+    }
+
+    private static long nullToZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Fenêtres d'une partition publiées par son propriétaire
+     */
+    public record PartitionState(int partition, String owner, long publishedAt,
+            Map<String, RollingWindow.State> windows) {
+    }
+}
@@ -0,0 +1,146 @@
+package ma.emsi.fraud.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Cache en mémoire des résultats d'enrichissement (isProxy par IP, isEmailLeaked
+ * par email), borné en taille (éviction W-TinyLFU) avec un TTL par type.
+ * Les échecs de lookup sont aussi mis en cache (négatif) sur une durée courte
+ * pour ne pas marteler un fournisseur en panne ; un refus local (bulkhead
+ * plein, circuit ouvert) n'est pas un échec du fournisseur et n'est pas mis
+ * en cache. Les miss concurrents sur une
+ * même clé partagent un seul appel externe (single-flight).
+ * Métriques : cache.gets{result=hit|miss}, cache.evictions, cache.size (cache=enrichment.ip|enrichment.email)
+ */
+@Component
+@Slf4j
+public class EnrichmentCache {
+
+    private final AsyncCache<String, Lookup> ipCache;
+    private final AsyncCache<String, Lookup> emailCache;
+
+    public EnrichmentCache(MeterRegistry meterRegistry,
+            @Value("${fraud.enrichment.cache.ip.ttl:10m}") Duration ipTtl,
+            @Value("${fraud.enrichment.cache.email.ttl:1h}") Duration emailTtl,
+            @Value("${fraud.enrichment.cache.negative-ttl:30s}") Duration negativeTtl,
+            @Value("${fraud.enrichment.cache.max-size:100000}") long maxSize) {
+        this.ipCache = CaffeineCacheMetrics.monitor(meterRegistry, build(ipTtl, negativeTtl, maxSize),
+                "enrichment.ip");
+        this.emailCache = CaffeineCacheMetrics.monitor(meterRegistry, build(emailTtl, negativeTtl, maxSize),
+                "enrichment.email");
+    }
+
+    /**
+     * Résultat isProxy pour cette IP, chargé via {@code loader} en cas de miss
+     */
+    public Mono<Boolean> isProxy(String ip, Function<String, Mono<Boolean>> loader) {
+        return lookup(ipCache, ip.trim(), loader);
+    }
+
+    /**
+     * Résultat isEmailLeaked pour cet email, chargé via {@code loader} en cas de miss
+     */
+    public Mono<Boolean> isEmailLeaked(String email, Function<String, Mono<Boolean>> loader) {
+        return lookup(emailCache, email.trim().toLowerCase(Locale.ROOT), loader);
+    }
+
+    private static Mono<Boolean> lookup(AsyncCache<String, Lookup> cache, String key,
+            Function<String, Mono<Boolean>> loader) {
+        // suppressCancel : un appelant qui annule ne doit pas annuler l'appel partagé
+        return Mono.fromFuture(() -> cache.get(key, (k, executor) -> loader.apply(k)
+                .map(Lookup::of)
+                .onErrorResume(e -> !isLocalRejection(e), e -> {
+                    log.warn("Enrichment lookup failed for {}, caching failure: {}", k, e.toString());
+                    return Mono.just(Lookup.FAILED);
+                })
+                .toFuture()), true)
+                .flatMap(Lookup::toMono);
+    }
+
+    /**
+     * Refus pris localement, sans réponse du fournisseur : le future en échec
+     * n'est pas gardé par Caffeine, l'appel suivant retente. Une couverture
+     * (hedging) dont toutes les tentatives sont refusées l'est aussi.
+     */
+    static boolean isLocalRejection(Throwable error) {
+        if (error instanceof BulkheadFullException || error instanceof CallNotPermittedException
+                || error instanceof RejectedExecutionException) {
+            return true;
+        }
+        Throwable[] suppressed = error.getSuppressed();
+        return suppressed.length > 0 && Arrays.stream(suppressed).allMatch(EnrichmentCache::isLocalRejection);
+    }
+
+    private static AsyncCache<String, Lookup> build(Duration ttl, Duration negativeTtl, long maxSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Lookup>() {
+                    @Override
+                    public long expireAfterCreate(String key, Lookup value, long currentTime) {
+                        return (value == Lookup.FAILED ? negativeTtl : ttl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Lookup value, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Lookup value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Valeur en cache : réponse du fournisseur ou échec (cache négatif)
+     */
+    enum Lookup {
+        TRUE, FALSE, FAILED;
+
+        static Lookup of(boolean value) {
+            return value ? TRUE : FALSE;
+        }
+
+        Mono<Boolean> toMono() {
+            return switch (this) {
+                case TRUE -> Mono.just(true);
+                case FALSE -> Mono.just(false);
+                case FAILED -> Mono.error(new EnrichmentUnavailableException());
+            };
+        }
+    }
+
+    /**
+     * Lookup en échec récent (servi depuis le cache négatif)
+     */
+    public static class EnrichmentUnavailableException extends RuntimeException {
+        EnrichmentUnavailableException() {
+            this("Enrichment provider unavailable (cached failure)");
+        }
+
+        EnrichmentUnavailableException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
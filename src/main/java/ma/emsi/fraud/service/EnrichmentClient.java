@@ -0,0 +1,21 @@
+package ma.emsi.fraud.service;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Client des services externes d'enrichissement (réputation IP & fuite Email).
+ * Les implémentations doivent être non bloquantes : aucun thread n'est occupé
+ * pendant l'attente de la réponse.
+ */
+public interface EnrichmentClient {
+
+    /**
+     * @return true si l'IP est connue comme proxy / VPN
+     */
+    Mono<Boolean> isProxy(String ip);
+
+    /**
+     * @return true si l'email apparaît dans une fuite de données connue
+     */
+    Mono<Boolean> isEmailLeaked(String email);
+}
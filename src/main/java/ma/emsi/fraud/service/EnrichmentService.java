@@ -1,50 +1,236 @@
 package ma.emsi.fraud.service;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
-import java.util.Random;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class EnrichmentService {
 
-    private final Random random = new Random();
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private static final long HEDGE_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final EnrichmentClient client;
+    private final EnrichmentCache cache;
+
+    private final Timer enrichSuccess;
+    private final Timer enrichPartial;
+    private final Timer enrichError;
+    private final Provider ipProvider;
+    private final Provider emailProvider;
+
+    public EnrichmentService(EnrichmentClient client, EnrichmentCache cache, MeterRegistry meterRegistry,
+            CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads) {
+        this.client = client;
+        this.cache = cache;
+        this.enrichSuccess = enrichTimer(meterRegistry, "success");
+        this.enrichPartial = enrichTimer(meterRegistry, "partial");
+        this.enrichError = enrichTimer(meterRegistry, "error");
+        this.ipProvider = new Provider("ip", meterRegistry, circuitBreakers, bulkheads);
+        this.emailProvider = new Provider("email", meterRegistry, circuitBreakers, bulkheads);
+    }
+
+    @Value("${fraud.enrichment.ip.timeout:1s}")
+    private Duration ipTimeout;
+
+    @Value("${fraud.enrichment.email.timeout:1s}")
+    private Duration emailTimeout;
+
+    @Value("${fraud.enrichment.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${fraud.enrichment.hedge.min-delay:20ms}")
+    private Duration hedgeMinDelay;
+
+    @Value("${fraud.enrichment.hedge.min-samples:20}")
+    private long hedgeMinSamples;
 
     /**
-     * Simule l'appel parallèle à 2 services externes (IP & Email)
+     * Appel parallèle aux 2 services externes (IP & Email) via un client non
+     * bloquant, chacun avec son propre timeout. Les résultats passent par
+     * {@link EnrichmentCache} : un client récurrent ne repaie pas la latence.
+     * Un lookup en échec (timeout, circuit ouvert, bulkhead plein) donne un
+     * résultat partiel ({@code complete=false}) ; l'enrichissement n'échoue
+     * que si les deux lookups échouent.
      * Utilise Mono.zip pour exécuter en parallèle
      */
     public Mono<EnrichmentResult> enrich(String ip, String email) {
         log.debug("Starting enrichment for IP: {} and Email: {}", ip, email);
 
-        // Simulation appel API IP (200ms)
-        Mono<Boolean> ipCheck = Mono.fromCallable(() -> {
-            Thread.sleep(200);
-            boolean isProxy = random.nextBoolean();
-            log.debug("IP Check completed: isProxy={}", isProxy);
-            return isProxy;
-        }).subscribeOn(Schedulers.boundedElastic());
-
-        // Simulation appel API Email (200ms)
-        Mono<Boolean> emailCheck = Mono.fromCallable(() -> {
-            Thread.sleep(200);
-            boolean isLeaked = random.nextBoolean();
-            log.debug("Email Check completed: isLeaked={}", isLeaked);
-            return isLeaked;
-        }).subscribeOn(Schedulers.boundedElastic());
+        Mono<Optional<Boolean>> ipCheck = ip == null ? Mono.just(Optional.of(false))
+                : orMissing(cache.isProxy(ip, key -> ipProvider.call(key, client::isProxy, ipTimeout)), "ip");
+
+        Mono<Optional<Boolean>> emailCheck = email == null ? Mono.just(Optional.of(false))
+                : orMissing(cache.isEmailLeaked(email,
+                        key -> emailProvider.call(key, client::isEmailLeaked, emailTimeout)), "email");
 
         // Exécution en PARALLÈLE avec Mono.zip
-        return Mono.zip(ipCheck, emailCheck)
-                .map(tuple -> new EnrichmentResult(tuple.getT1(), tuple.getT2()))
-                .timeout(Duration.ofSeconds(5))
-                .doOnSuccess(result -> log.debug("Enrichment completed: {}", result))
-                .doOnError(error -> log.error("Enrichment failed", error));
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.zip(ipCheck, emailCheck)
+                    .flatMap(tuple -> combine(tuple.getT1(), tuple.getT2()))
+                    .doOnSuccess(result -> {
+                        (result.complete() ? enrichSuccess : enrichPartial)
+                                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        log.debug("Enrichment completed: {}", result);
+                    })
+                    .doOnError(error -> {
+                        enrichError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        log.error("Enrichment failed", error);
+                    });
+        });
+    }
+
+    private static Mono<Optional<Boolean>> orMissing(Mono<Boolean> lookup, String source) {
+        return lookup.map(Optional::of)
+                .onErrorResume(error -> {
+                    log.debug("{} lookup missing from enrichment: {}", source, error.toString());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    private static Mono<EnrichmentResult> combine(Optional<Boolean> proxy, Optional<Boolean> leaked) {
+        if (proxy.isEmpty() && leaked.isEmpty()) {
+            return Mono.error(new EnrichmentCache.EnrichmentUnavailableException("IP and email lookups both failed"));
+        }
+        return Mono.just(new EnrichmentResult(proxy.orElse(false), leaked.orElse(false),
+                proxy.isPresent() && leaked.isPresent()));
+    }
+
+    private static Timer enrichTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("fraud.enrichment.latency")
+                .description("Durée de l'enrichissement IP + email (cache compris)")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
-    public record EnrichmentResult(boolean isProxy, boolean isEmailLeaked) {
+    /**
+     * Fournisseur externe : circuit breaker et bulkhead Resilience4j propres
+     * (instances enrichment-ip / enrichment-email), et requête de couverture
+     * (hedging) si la première tentative dépasse le p95 observé du fournisseur.
+     * Métriques : fraud.enrichment.lookup{source} (par tentative),
+     * fraud.enrichment.hedged{source}.
+     */
+    private final class Provider {
+
+        private final CircuitBreaker circuitBreaker;
+        private final Bulkhead bulkhead;
+        private final Timer lookup;
+        private final Counter hedged;
+
+        private volatile long hedgeDelayNanos = Long.MAX_VALUE;
+        private volatile long hedgeRefreshedAt = System.nanoTime() - HEDGE_REFRESH_NANOS;
+
+        private Provider(String source, MeterRegistry meterRegistry, CircuitBreakerRegistry circuitBreakers,
+                BulkheadRegistry bulkheads) {
+            this.circuitBreaker = circuitBreakers.circuitBreaker("enrichment-" + source);
+            this.bulkhead = bulkheads.bulkhead("enrichment-" + source);
+            this.lookup = Timer.builder("fraud.enrichment.lookup")
+                    .description("Durée d'une tentative d'appel au fournisseur externe (miss du cache)")
+                    .tag("source", source)
+                    .publishPercentiles(HEDGE_PERCENTILE)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.hedged = Counter.builder("fraud.enrichment.hedged")
+                    .description("Requêtes de couverture envoyées après le p95 du fournisseur")
+                    .tag("source", source)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Première réponse valide entre la tentative initiale et, passé le p95,
+         * une seconde tentative ; la perdante est annulée. Pas de couverture
+         * circuit ouvert ni tant que le p95 n'est pas significatif.
+         * {@code deadline} borne chaque tentative et le lookup entier.
+         */
+        Mono<Boolean> call(String key, Function<String, Mono<Boolean>> lookupCall, Duration deadline) {
+            return Mono.defer(() -> {
+                Mono<Boolean> primary = attempt(key, lookupCall, deadline);
+                long delay = hedgeDelayNanos();
+                if (delay == Long.MAX_VALUE || circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+                    return primary.timeout(deadline);
+                }
+                Mono<Boolean> hedge = Mono.delay(Duration.ofNanos(delay))
+                        .then(Mono.defer(() -> {
+                            hedged.increment();
+                            return attempt(key, lookupCall, deadline);
+                        }));
+                return Mono.firstWithValue(primary, hedge).timeout(deadline);
+            });
+        }
+
+        /**
+         * Une tentative : bulkhead au plus près de l'appel, circuit breaker
+         * autour, qui compte les timeouts comme des échecs. Une tentative
+         * annulée (couverture perdante) n'est pas mesurée.
+         */
+        private Mono<Boolean> attempt(String key, Function<String, Mono<Boolean>> lookupCall, Duration timeout) {
+            return Mono.defer(() -> {
+                        long start = System.nanoTime();
+                        return lookupCall.apply(key)
+                                .timeout(timeout)
+                                .doOnEach(signal -> {
+                                    if (signal.isOnNext() || signal.isOnError()) {
+                                        lookup.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                                    }
+                                });
+                    })
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+        }
+
+        /**
+         * p95 des tentatives récentes (fenêtre glissante du Timer), relu au
+         * plus une fois par seconde, borné par hedge.min-delay
+         */
+        private long hedgeDelayNanos() {
+            long now = System.nanoTime();
+            if (now - hedgeRefreshedAt >= HEDGE_REFRESH_NANOS) {
+                hedgeRefreshedAt = now;
+                hedgeDelayNanos = computeHedgeDelay();
+            }
+            return hedgeDelayNanos;
+        }
+
+        private long computeHedgeDelay() {
+            if (!hedgeEnabled || lookup.count() < hedgeMinSamples) {
+                return Long.MAX_VALUE;
+            }
+            for (ValueAtPercentile percentile : lookup.takeSnapshot().percentileValues()) {
+                if (percentile.percentile() == HEDGE_PERCENTILE) {
+                    return Math.max(hedgeMinDelay.toNanos(), (long) percentile.value(TimeUnit.NANOSECONDS));
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * {@code complete=false} : au moins un des deux lookups n'a pas abouti,
+     * le signal manquant vaut false
+     */
+    public record EnrichmentResult(boolean isProxy, boolean isEmailLeaked, boolean complete) {
+
+        public EnrichmentResult(boolean isProxy, boolean isEmailLeaked) {
+            this(isProxy, isEmailLeaked, true);
+        }
     }
 }
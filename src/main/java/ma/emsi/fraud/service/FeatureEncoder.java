@@ -0,0 +1,71 @@
+package ma.emsi.fraud.service;
+
+import ma.emsi.fraud.model.FraudRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Encode les FraudRequest directement dans des FloatBuffer directs réutilisés
+ * par thread. ONNX Runtime utilise un buffer direct en ordre natif sans copie,
+ * donc aucun float[] intermédiaire n'est alloué entre la requête et le tenseur.
+ */
+public final class FeatureEncoder {
+
+    /**
+     * Nombre de features attendues par le modèle
+     */
+    public static final int FEATURES = 6;
+
+    private static final int INITIAL_ROWS = 256;
+
+    private static final ThreadLocal<FloatBuffer> BUFFERS = ThreadLocal.withInitial(() -> allocate(INITIAL_ROWS));
+
+    private FeatureEncoder() {
+    }
+
+    /**
+     * Buffer direct du thread courant, prêt pour {@code rows} lignes
+     * (position 0, limit rows * 6). Agrandi seulement si le lot dépasse sa capacité.
+     */
+    public static FloatBuffer buffer(int rows) {
+        FloatBuffer buffer = BUFFERS.get();
+        if (buffer.capacity() < rows * FEATURES) {
+            buffer = allocate(Math.max(rows, buffer.capacity() / FEATURES * 2));
+            BUFFERS.set(buffer);
+        }
+        buffer.clear().limit(rows * FEATURES);
+        return buffer;
+    }
+
+    /**
+     * Les features numériques obligatoires sont présentes : à vérifier avant
+     * d'entrer dans un lot, où un NPE à l'encodage ferait échouer toutes les lignes
+     */
+    public static boolean isScorable(FraudRequest request) {
+        return request != null && request.amount() != null && request.oldBalance() != null
+                && request.newBalance() != null;
+    }
+
+    /**
+     * Écrit les 6 features de la requête à la ligne {@code row} (écriture absolue,
+     * même ordre que le script Python d'entraînement).
+     * Defaults: type=0 (PAYMENT), dest balances = 0.0 if null
+     */
+    public static void encode(FraudRequest request, FloatBuffer out, int row) {
+        int base = row * FEATURES;
+        out.put(base, request.type() != null ? request.type() : 0); // type encodé
+        out.put(base + 1, (float) request.amount().doubleValue()); // amount
+        out.put(base + 2, (float) request.oldBalance().doubleValue()); // oldbalanceOrg
+        out.put(base + 3, (float) request.newBalance().doubleValue()); // newbalanceOrig
+        out.put(base + 4, request.oldBalanceDest() != null ? (float) request.oldBalanceDest().doubleValue() : 0f); // oldbalanceDest
+        out.put(base + 5, request.newBalanceDest() != null ? (float) request.newBalanceDest().doubleValue() : 0f); // newbalanceDest
+    }
+
+    private static FloatBuffer allocate(int rows) {
+        return ByteBuffer.allocateDirect(rows * FEATURES * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
@@ -0,0 +1,59 @@
+package ma.emsi.fraud.service;
+
+import lombok.RequiredArgsConstructor;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import ma.emsi.fraud.model.RecordsCursor;
+import ma.emsi.fraud.model.RecordsPage;
+import ma.emsi.fraud.repository.FraudCheckRepository;
+import ma.emsi.fraud.repository.FraudCheckSpecifications;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Lectures des FraudCheck exposées en réactif : chaque appel JPA bloquant
+ * s'exécute sur le scheduler "jdbc" borné, jamais sur l'event loop Netty.
+ * Si la file du scheduler est pleine, la requête est refusée (503) au lieu
+ * de s'accumuler.
+ */
+@Service
+@RequiredArgsConstructor
+public class FraudCheckQueryService {
+
+    private final FraudCheckRepository repository;
+    private final Scheduler jdbcScheduler;
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
+    /**
+     * Page de fraud checks filtrés, du plus récent au plus ancien, après le
+     * curseur donné (null = première page)
+     */
+    public Mono<RecordsPage> search(FraudCheckFilter filter, RecordsCursor cursor, int limit) {
+        return blocking(() -> repository.findBy(FraudCheckSpecifications.matching(filter, cursor),
+                query -> query.sortBy(NEWEST_FIRST).limit(limit + 1).all()))
+                .map(rows -> {
+                    // Une ligne de plus que demandé : indique qu'une page suivante existe
+                    if (rows.size() <= limit) {
+                        return new RecordsPage(rows, null);
+                    }
+                    List<FraudCheck> page = rows.subList(0, limit);
+                    return new RecordsPage(page, RecordsCursor.after(page.get(limit - 1)).encode());
+                });
+    }
+
+    private <T> Mono<T> blocking(Callable<T> query) {
+        return Mono.fromCallable(query)
+                .subscribeOn(jdbcScheduler)
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Database busy", e));
+    }
+}
@@ -0,0 +1,348 @@
+package ma.emsi.fraud.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.DecisionPath;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudRequest;
+import ma.emsi.fraud.model.FraudResponse;
+import ma.emsi.fraud.service.PipelineInstrumentation.Stage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Pipeline de décision par étages, du moins cher au plus cher :
+ * 0. vélocité de l'IP / email / compte ({@link VelocityFeatureStore}), 1. règles (RulePreFilter), 2. modèle ONNX à 6 features, 3. enrichissement
+ * IP/email seulement si le score tombe dans la bande incertaine ; les
+ * signaux proxy / email fuité ajustent alors le score avant le seuil.
+ * La décision est ensuite publiée en audit sur Kafka. Chaque étage est
+ * chronométré par {@link PipelineInstrumentation}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FraudDecisionService {
+
+    private final EnrichmentService enrichmentService;
+    private final MlService mlService;
+    private final AuditPublisher auditPublisher;
+    private final RulePreFilter rulePreFilter;
+    private final PipelineInstrumentation instrumentation;
+    private final VelocityFeatureStore velocityStore;
+
+    @Value("${fraud.risk.threshold:0.0001}")
+    private double riskThreshold;
+
+    // Bande [low, high[ où le score seul ne suffit pas : au-dessous LOW, au-dessus HIGH sans enrichissement
+    @Value("${fraud.tiered.uncertain-low:0.00005}")
+    private double uncertainLow;
+
+    @Value("${fraud.tiered.uncertain-high:0.3}")
+    private double uncertainHigh;
+
+    @Value("${fraud.tiered.proxy-factor:4.0}")
+    private double proxyFactor;
+
+    @Value("${fraud.tiered.leaked-email-factor:2.0}")
+    private double leakedEmailFactor;
+
+    @Value("${fraud.tiered.clean-factor:0.5}")
+    private double cleanFactor;
+
+    // Lance l'enrichissement en parallèle du modèle : latence max(ML, enrichissement)
+    // dans la bande, cache chaud pour les autres, au prix d'appels externes inutiles
+    @Value("${fraud.tiered.speculative-enrichment:false}")
+    private boolean speculativeEnrichment;
+
+    // Transactions par minute d'une même entité à partir desquelles le score est relevé
+    @Value("${fraud.velocity.burst-threshold:20}")
+    private long burstThreshold;
+
+    @Value("${fraud.velocity.burst-factor:4.0}")
+    private double burstFactor;
+
+    // Score sans modèle des TRANSFER / CASH_OUT en surcharge (RULES_ONLY). 0 par défaut :
+    // sous fraud.risk.threshold, donc LOW (fail-open). Les vidages de compte restent
+    // HIGH par la règle ; marquer HIGH tous les types à risque bloquerait les clients
+    // légitimes au moment où le service sature. Le chemin RULE_FALLBACK de l'audit
+    // permet de re-scorer ces décisions hors ligne (/fraud/bulk?offline=true).
+    @Value("${fraud.overload.fallback-score:0.0}")
+    private float fallbackScore;
+
+    // Lignes d'un lot bulk en cours d'enrichissement / audit simultanément
+    @Value("${fraud.bulk.concurrency:64}")
+    private int bulkConcurrency;
+
+    /**
+     * Décide du risque d'une requête et publie l'audit, au niveau de service
+     * accordé par {@link AdaptiveConcurrencyLimiter} : SKIP_ENRICHMENT décide sur
+     * le score du modèle seul, RULES_ONLY n'appelle pas le modèle
+     * ({@link #fallback}).
+     * Une requête sans montant ou soldes est refusée avant toute règle : ni
+     * vélocité, ni audit.
+     */
+    public Mono<FraudResponse> check(FraudRequest request, AdaptiveConcurrencyLimiter.Level level) {
+        if (!FeatureEncoder.isScorable(request)) {
+            return Mono.error(new IllegalArgumentException("amount, oldBalance and newBalance are required"));
+        }
+        long start = System.nanoTime();
+        PipelineInstrumentation.Trace trace = instrumentation.startTrace();
+
+        // 0. Vélocité : la transaction est comptée pour son IP, email et compte
+        VelocityFeatureStore.VelocitySnapshot velocity = velocityStore.record(request);
+        long rulesStart = instrumentation.stage(Stage.VELOCITY, start, trace);
+
+        // 1. Pré-filtre : ni modèle ni enrichissement
+        Optional<RulePreFilter.RuleDecision> rule = rulePreFilter.evaluate(request);
+        if (rule.isEmpty() && level == AdaptiveConcurrencyLimiter.Level.RULES_ONLY) {
+            rule = Optional.of(fallback(request));
+        }
+        long modelStart = instrumentation.stage(Stage.RULES, rulesStart, trace);
+        if (rule.isPresent()) {
+            return decide(request, rule.get().score(), rule.get().path(), start, trace);
+        }
+
+        boolean enrich = level == AdaptiveConcurrencyLimiter.Level.FULL;
+        Mono<EnrichmentService.EnrichmentResult> enrichment = speculativeEnrichment && enrich
+                ? speculate(request)
+                : Mono.defer(() -> enrichmentService.enrich(request.ip(), request.email()));
+
+        // 2. Modèle ONNX (Async), regroupé en lot [N, 6] et encodé sans copie
+        return mlService.score(request)
+                .map(score -> withVelocity(score, velocity))
+                .flatMap(score -> {
+                    long enrichmentStart = instrumentation.stage(Stage.MODEL, modelStart, trace);
+                    if (!enrich || !isUncertain(score)) {
+                        return decide(request, score, DecisionPath.MODEL, start, trace);
+                    }
+                    // 3. Score incertain : les signaux externes tranchent
+                    return enrichAndAdjust(score, enrichment)
+                            .flatMap(scored -> {
+                                instrumentation.stage(Stage.ENRICHMENT, enrichmentStart, trace);
+                                return decide(request, scored.score(), scored.path(), start, trace);
+                            });
+                });
+    }
+
+    /**
+     * Décisions d'un lot de requêtes (traitements de masse), dans l'ordre du lot,
+     * chaque décision publiée en audit. En mode offline, ni enrichissement ni audit.
+     */
+    public Flux<FraudResponse> checkBulk(List<FraudRequest> requests, boolean offline) {
+        Flux<Decision> decisions = decideAll(requests, offline);
+        if (offline) {
+            return decisions.map(Decision::response);
+        }
+        return decisions.concatMap(decision -> decision.rejected() ? Mono.just(decision.response())
+                : auditPublisher.publish(decision.audit()).thenReturn(decision.response()));
+    }
+
+    /**
+     * Décisions d'un lot, dans l'ordre du lot, sans publication : vélocité,
+     * règles, puis une seule passe ONNX pour toutes les lignes restantes et
+     * enrichissement des scores incertains ({@code fraud.bulk.concurrency} lignes
+     * à la fois). En mode offline : score du modèle seul, vélocité non comptée.
+     * Une ligne incomplète donne une décision refusée (ERROR, sans audit)
+     * sans faire échouer le lot.
+     */
+    public Flux<Decision> decideAll(List<FraudRequest> requests, boolean offline) {
+        return decideAll(requests, offline, new BitSet());
+    }
+
+    /**
+     * Comme {@link #decideAll(List, boolean)}, mais les lignes de {@code alreadyCounted}
+     * (rejeu d'un lot déjà vu) lisent la vélocité sans la compter une seconde fois
+     */
+    public Flux<Decision> decideAll(List<FraudRequest> requests, boolean offline, BitSet alreadyCounted) {
+        int rows = requests.size();
+        VelocityFeatureStore.VelocitySnapshot[] velocity = new VelocityFeatureStore.VelocitySnapshot[rows];
+        RulePreFilter.RuleDecision[] rules = new RulePreFilter.RuleDecision[rows];
+        int[] modelRow = new int[rows];
+        List<FraudRequest> toScore = new ArrayList<>(rows);
+        boolean[] incomplete = new boolean[rows];
+        for (int i = 0; i < rows; i++) {
+            if (!FeatureEncoder.isScorable(requests.get(i))) {
+                incomplete[i] = true;
+                modelRow[i] = -1;
+                continue;
+            }
+            velocity[i] = offline ? null : alreadyCounted.get(i) ? lookupVelocity(requests.get(i))
+                    : velocityStore.record(requests.get(i));
+            rules[i] = rulePreFilter.evaluate(requests.get(i)).orElse(null);
+            modelRow[i] = rules[i] == null ? toScore.size() : -1;
+            if (rules[i] == null) {
+                toScore.add(requests.get(i));
+            }
+        }
+        instrumentation.bulkRows(rows, offline);
+
+        Mono<float[]> scores = toScore.isEmpty() ? Mono.just(new float[0]) : mlService.scoreAll(toScore);
+        return scores.flatMapMany(modelScores -> Flux.range(0, rows)
+                .flatMapSequential(i -> {
+                    FraudRequest request = requests.get(i);
+                    if (incomplete[i]) {
+                        return Mono.just(Decision.incomplete(request));
+                    }
+                    if (rules[i] != null) {
+                        return Mono.just(decision(request, rules[i].score(), rules[i].path()));
+                    }
+                    if (offline) {
+                        return Mono.just(decision(request, modelScores[modelRow[i]], DecisionPath.MODEL));
+                    }
+                    float score = withVelocity(modelScores[modelRow[i]], velocity[i]);
+                    if (!isUncertain(score)) {
+                        return Mono.just(decision(request, score, DecisionPath.MODEL));
+                    }
+                    return enrichAndAdjust(score,
+                            Mono.defer(() -> enrichmentService.enrich(request.ip(), request.email())))
+                            .map(scored -> decision(request, scored.score(), scored.path()));
+                }, bulkConcurrency));
+    }
+
+    private VelocityFeatureStore.VelocitySnapshot lookupVelocity(FraudRequest request) {
+        return velocityStore.lookup(request.ip(), request.email(), request.accountId());
+    }
+
+    /**
+     * Décision sans modèle pour une requête qu'aucune règle ne tranche (mode
+     * dégradé) : fallback-score pour les types à risque, 0 pour les autres
+     */
+    RulePreFilter.RuleDecision fallback(FraudRequest request) {
+        float score = rulePreFilter.isRiskyType(request.type()) ? fallbackScore : 0.0f;
+        return new RulePreFilter.RuleDecision(score, DecisionPath.RULE_FALLBACK);
+    }
+
+    /**
+     * Score ajusté par l'enrichissement ; score du modèle seul si l'enrichissement échoue
+     */
+    private Mono<Scored> enrichAndAdjust(float score, Mono<EnrichmentService.EnrichmentResult> enrichment) {
+        return enrichment
+                .map(result -> new Scored(adjust(score, result), DecisionPath.MODEL_ENRICHED))
+                .onErrorResume(e -> {
+                    log.warn("Enrichment unavailable, deciding on model score alone: {}", e.toString());
+                    return Mono.just(new Scored(score, DecisionPath.MODEL));
+                });
+    }
+
+    /**
+     * Rafale sur une entité (même IP, email ou compte) : score du modèle relevé,
+     * ce qui peut le faire entrer dans la bande incertaine et déclencher l'enrichissement
+     */
+    float withVelocity(float score, VelocityFeatureStore.VelocitySnapshot velocity) {
+        if (velocity.maxCount1m() < burstThreshold) {
+            return score;
+        }
+        return (float) Math.min(1.0, Math.max(score, uncertainLow) * burstFactor);
+    }
+
+    boolean isUncertain(float score) {
+        return score >= uncertainLow && score < uncertainHigh;
+    }
+
+    /**
+     * Score ajusté par les signaux d'enrichissement, borné à 1. Un résultat
+     * partiel ne prouve pas que le client est propre : pas de cleanFactor.
+     */
+    float adjust(float score, EnrichmentService.EnrichmentResult result) {
+        double factor = 1.0;
+        if (result.isProxy()) {
+            factor *= proxyFactor;
+        }
+        if (result.isEmailLeaked()) {
+            factor *= leakedEmailFactor;
+        }
+        if (!result.isProxy() && !result.isEmailLeaked() && result.complete()) {
+            factor = cleanFactor;
+        }
+        return (float) Math.min(1.0, score * factor);
+    }
+
+    private Mono<EnrichmentService.EnrichmentResult> speculate(FraudRequest request) {
+        Mono<EnrichmentService.EnrichmentResult> early = enrichmentService.enrich(request.ip(), request.email())
+                .cache();
+        early.subscribe(result -> {
+        }, error -> log.debug("Speculative enrichment failed: {}", error.toString()));
+        return early;
+    }
+
+    private Mono<FraudResponse> decide(FraudRequest request, float score, DecisionPath path, long start,
+            PipelineInstrumentation.Trace trace) {
+        long auditStart = System.nanoTime();
+        return publish(request, score, path)
+                .doOnNext(response -> {
+                    instrumentation.stage(Stage.AUDIT, auditStart, trace);
+                    instrumentation.finish(start, path, score, response.risk(), request, trace);
+                });
+    }
+
+    // Déterminer le niveau de risque (seuil configurable)
+    private String risk(float score) {
+        return score > riskThreshold ? "HIGH" : "LOW";
+    }
+
+    /**
+     * Détermine le risque, publie l'audit sur Kafka et construit la réponse
+     */
+    private Mono<FraudResponse> publish(FraudRequest request, float score, DecisionPath path) {
+        Decision decision = decision(request, score, path);
+        // Envoi à Kafka : non bloquant, jamais en erreur (outbox locale si le broker est indisponible),
+        // réponse sans attendre l'acquittement
+        return auditPublisher.publish(decision.audit())
+                .thenReturn(decision.response());
+    }
+
+    private Decision decision(FraudRequest request, float score, DecisionPath path) {
+        return new Decision(request, score, risk(score), path);
+    }
+
+    /**
+     * Décision d'une requête : réponse au client et audit FraudCheck
+     */
+    public record Decision(FraudRequest request, float score, String risk, DecisionPath path) {
+
+        /**
+         * Requête incomplète : même réponse que l'erreur de /fraud/check, pas d'audit
+         */
+        static Decision incomplete(FraudRequest request) {
+            return new Decision(request, -1.0f, "ERROR", null);
+        }
+
+        public boolean rejected() {
+            return path == null;
+        }
+
+        public FraudResponse response() {
+            return new FraudResponse(score, risk, path);
+        }
+
+        public FraudCheck audit() {
+            // Defaults: type=0 (PAYMENT), dest balances = 0.0 if null
+            FraudCheck fraudCheck = new FraudCheck();
+            fraudCheck.setAmount(request.amount());
+            fraudCheck.setScore(score);
+            fraudCheck.setRisk(risk);
+            fraudCheck.setTransactionType(request.type() != null ? request.type() : 0);
+            fraudCheck.setOldBalance(request.oldBalance());
+            fraudCheck.setNewBalance(request.newBalance());
+            fraudCheck.setOldBalanceDest(request.oldBalanceDest() != null ? request.oldBalanceDest() : 0.0);
+            fraudCheck.setNewBalanceDest(request.newBalanceDest() != null ? request.newBalanceDest() : 0.0);
+            fraudCheck.setIpAddress(request.ip());
+            fraudCheck.setEmail(request.email());
+            fraudCheck.setAccountId(request.accountId());
+            fraudCheck.setDecisionPath(path);
+            fraudCheck.setCreatedAt(LocalDateTime.now()); // Set date immediately
+            return fraudCheck;
+        }
+    }
+
+    private record Scored(float score, DecisionPath path) {
+    }
+}
@@ -0,0 +1,139 @@
+package ma.emsi.fraud.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.repository.FraudCheckRepository;
+import ma.emsi.fraud.repository.RiskAggregate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques des fraud checks maintenues en continu : amorcées une fois
+ * par un agrégat SQL, puis mises à jour à chaque lot persisté par
+ * AuditConsumer. Lecture en O(1), sans toucher la base.
+ * En mode cluster, la lecture est déléguée à {@link ClusterStateService}
+ * (vue fusionnée de toutes les partitions).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FraudStatsService {
+
+    static final List<String> WINDOWS = List.of("1m", "1h", "24h");
+
+    private final FraudCheckRepository repository;
+    private final ObjectProvider<ClusterStateService> clusterProvider;
+    private ClusterStateService cluster;
+
+    private final LongAdder total = new LongAdder();
+    private final LongAdder highRisk = new LongAdder();
+    private final LongAdder lowRisk = new LongAdder();
+    private final DoubleAdder scoreSum = new DoubleAdder();
+
+    private final Map<String, RollingWindow> windows = newWindows();
+
+    /**
+     * Amorçage depuis la base, avant le démarrage des listeners Kafka
+     */
+    @PostConstruct
+    public void seed() {
+        cluster = clusterProvider.getIfAvailable();
+        RiskAggregate aggregate = repository.aggregateByRisk();
+        if (aggregate == null || aggregate.total() == null) {
+            return;
+        }
+        total.add(aggregate.total());
+        highRisk.add(nullToZero(aggregate.highRisk()));
+        lowRisk.add(nullToZero(aggregate.lowRisk()));
+        scoreSum.add(aggregate.scoreSum() != null ? aggregate.scoreSum() : 0.0);
+        log.info("Fraud statistics seeded from database: {} records", aggregate.total());
+    }
+
+    /**
+     * Prend en compte un lot de fraud checks persistés
+     */
+    public void record(List<FraudCheck> fraudChecks) {
+        long high = 0;
+        long low = 0;
+        double sum = 0;
+        for (FraudCheck check : fraudChecks) {
+            if ("HIGH".equals(check.getRisk())) {
+                high++;
+            } else if ("LOW".equals(check.getRisk())) {
+                low++;
+            }
+            sum += check.getScore();
+        }
+
+        total.add(fraudChecks.size());
+        highRisk.add(high);
+        lowRisk.add(low);
+        scoreSum.add(sum);
+
+        long now = System.currentTimeMillis();
+        for (RollingWindow window : windows.values()) {
+            window.add(now, fraudChecks.size(), high, sum);
+        }
+    }
+
+    /**
+     * Statistiques globales
+     */
+    public Stats totals() {
+        if (cluster != null) {
+            return cluster.totals();
+        }
+        return Stats.of(total.sum(), highRisk.sum(), lowRisk.sum(), scoreSum.sum());
+    }
+
+    /**
+     * Statistiques par fenêtre glissante (1m, 1h, 24h)
+     */
+    public Map<String, Stats> windows() {
+        if (cluster != null) {
+            return cluster.windows();
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Stats> result = new LinkedHashMap<>();
+        for (String name : WINDOWS) {
+            result.put(name, windows.get(name).snapshot(now));
+        }
+        return result;
+    }
+
+    /**
+     * Fenêtres 1m (60 x 1s), 1h (60 x 1min) et 24h (96 x 15min)
+     */
+    static Map<String, RollingWindow> newWindows() {
+        return Map.of(
+                "1m", new RollingWindow(60, TimeUnit.SECONDS.toMillis(1)),
+                "1h", new RollingWindow(60, TimeUnit.MINUTES.toMillis(1)),
+                "24h", new RollingWindow(96, TimeUnit.MINUTES.toMillis(15)));
+    }
+
+    private static long nullToZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    public record Stats(long total, long highRisk, long lowRisk, double avgScore) {
+        static final Stats EMPTY = new Stats(0, 0, 0, 0.0);
+
+        static Stats of(long total, long high, long low, double scoreSum) {
+            return new Stats(total, high, low, total > 0 ? scoreSum / total : 0.0);
+        }
+
+        Stats plus(Stats other) {
+            return of(total + other.total, highRisk + other.highRisk, lowRisk + other.lowRisk,
+                    avgScore * total + other.avgScore * other.total);
+        }
+    }
+}
@@ -1,28 +1,160 @@
 package ma.emsi.fraud.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion des fraud checks vers les clients SSE. Chaque client a sa propre
+ * file bornée ({@link StreamSubscriber}) : un client lent perd des événements
+ * selon sa {@link StreamPolicy} au lieu de ralentir les autres ou de faire
+ * grossir la mémoire. Les événements portent un id croissant ; les derniers
+ * sont gardés dans un anneau borné pour la reprise Last-Event-ID, ce qui évite
+ * qu'une vague de reconnexions (après un déploiement) ne retombe sur Postgres.
+ * En mode cluster, les ids viennent de l'offset fraud-stream
+ * ({@link #pushEvent(FraudCheck, long)}) : identiques sur toutes les instances.
+ */
 @Service
+@RequiredArgsConstructor
+@Slf4j
 public class FraudStreamService {
 
-    // Sinks.many().multicast().onBackpressureBuffer() creates a hot hot publisher
-    // that broadcasts messages to all subscribers.
-    private final Sinks.Many<FraudCheck> sink = Sinks.many().multicast().onBackpressureBuffer();
+    private final MeterRegistry meterRegistry;
+
+    @Value("${fraud.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${fraud.stream.policy:DROP_OLDEST}")
+    private StreamPolicy defaultPolicy;
+
+    @Value("${fraud.stream.replay-size:1024}")
+    private int replaySize;
+
+    private final Set<StreamSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Amorcé sur l'horloge : un Last-Event-ID d'une instance précédente reste
+    // inférieur aux nouveaux ids et est détecté comme reprise impossible
+    private final AtomicLong eventSequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final AtomicLong subscriberSequence = new AtomicLong();
+    private final Scheduler drainScheduler = Schedulers.parallel();
+    private final Map<StreamPolicy, Counter> droppedCounters = new EnumMap<>(StreamPolicy.class);
+    private ReplayRing replayRing;
+    private Counter replayed;
+
+    @PostConstruct
+    void init() {
+        replayRing = new ReplayRing(replaySize);
+        replayed = Counter.builder("fraud.stream.replayed")
+                .description("Événements renvoyés depuis l'anneau de replay (Last-Event-ID)")
+                .register(meterRegistry);
+        for (StreamPolicy policy : StreamPolicy.values()) {
+            droppedCounters.put(policy, Counter.builder("fraud.stream.dropped")
+                    .description("Événements SSE jetés ou regroupés pour un client lent")
+                    .tag("policy", policy.name())
+                    .register(meterRegistry));
+        }
+        meterRegistry.gauge("fraud.stream.subscribers", subscribers, Set::size);
+    }
 
     /**
-     * Push a new fraud check event to all connected clients
+     * Push a new fraud check event to all connected clients.
+     * Thread-safe : les threads consommateurs Kafka peuvent émettre en parallèle ;
+     * la synchronisation garde les ids dans l'ordre d'arrivée pour chaque client.
      */
-    public void pushEvent(FraudCheck fraudCheck) {
-        sink.tryEmitNext(fraudCheck);
+    public synchronized void pushEvent(FraudCheck fraudCheck) {
+        broadcast(eventSequence.incrementAndGet(), fraudCheck);
     }
 
     /**
-     * Get the stream of fraud check events
+     * Événement dont l'id est fixé par l'appelant (offset fraud-stream en mode
+     * cluster), croissant d'un appel à l'autre
      */
-    public Flux<FraudCheck> getFraudStream() {
-        return sink.asFlux();
+    public synchronized void pushEvent(FraudCheck fraudCheck, long eventId) {
+        eventSequence.set(eventId);
+        broadcast(eventId, fraudCheck);
+    }
+
+    private void broadcast(long eventId, FraudCheck fraudCheck) {
+        replayRing.add(eventId, fraudCheck);
+        for (StreamSubscriber subscriber : subscribers) {
+            subscriber.offer(eventId, fraudCheck);
+        }
+    }
+
+    /**
+     * Get the stream of all fraud check events with the default policy
+     */
+    public Flux<ServerSentEvent<?>> getFraudStream() {
+        return getFraudStream(defaultPolicy, FraudCheckFilter.NONE, null);
+    }
+
+    /**
+     * Get the stream of fraud check events matching the filter. Les fraud
+     * checks sont des événements SSE sans nom (EventSource.onmessage) ; les
+     * résumés CONFLATE portent le nom "summary".
+     * Avec lastEventId, les événements manqués encore dans l'anneau sont
+     * renvoyés d'abord ; si l'anneau ne remonte pas assez loin, un événement
+     * "replay-truncated" prévient le client qu'il doit recharger /records.
+     */
+    public Flux<ServerSentEvent<?>> getFraudStream(StreamPolicy policy, FraudCheckFilter filter, Long lastEventId) {
+        StreamPolicy effectivePolicy = policy != null ? policy : defaultPolicy;
+        // IGNORE : pas de buffer caché dans Flux.create, la file bornée est celle du subscriber
+        return Flux.create(sink -> {
+            StreamSubscriber subscriber = new StreamSubscriber(subscriberSequence.incrementAndGet(),
+                    effectivePolicy, filter, bufferSize, sink, drainScheduler, droppedCounters.get(effectivePolicy));
+            sink.onRequest(n -> subscriber.scheduleDrain());
+            sink.onDispose(() -> {
+                subscribers.remove(subscriber);
+                log.info("Stream client #{} disconnected ({} events dropped, policy {})",
+                        subscriber.id(), subscriber.dropped(), subscriber.policy());
+            });
+            // Sous le verrou de pushEvent : ni trou ni doublon entre replay et live
+            synchronized (this) {
+                if (lastEventId != null) {
+                    replay(subscriber, lastEventId);
+                }
+                subscribers.add(subscriber);
+            }
+            subscriber.scheduleDrain();
+        }, FluxSink.OverflowStrategy.IGNORE);
+    }
+
+    private void replay(StreamSubscriber subscriber, long lastEventId) {
+        long oldest = replayRing.oldestId();
+        boolean truncated = oldest == -1 ? lastEventId < eventSequence.get() : lastEventId < oldest - 1;
+        ServerSentEvent<?> notice = truncated
+                ? ServerSentEvent.builder(Map.of("lastEventId", lastEventId, "oldestAvailable", oldest))
+                        .event("replay-truncated").build()
+                : null;
+        List<ReplayRing.Entry> missed = replayRing.after(lastEventId, subscriber::accepts);
+        subscriber.replay(notice, missed);
+        replayed.increment(missed.size());
+        log.debug("Stream client #{} resumed after {}: {} events replayed{}", subscriber.id(), lastEventId,
+                missed.size(), truncated ? " (truncated)" : "");
+    }
+
+    long lastEventId() {
+        return eventSequence.get();
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
     }
 }
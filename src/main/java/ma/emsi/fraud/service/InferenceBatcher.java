@@ -0,0 +1,196 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudRequest;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regroupe les demandes de scoring concurrentes en tenseurs [N, 6].
+ * Un thread dédié vide la file dès que maxBatchSize est atteint ou que la plus
+ * ancienne demande a attendu maxWait, puis confie le lot au scheduler
+ * "ml-scoring" (un thread par Predictor du pool). Tant que tous les workers
+ * sont occupés, le dispatcher attend et les lots suivants grossissent.
+ */
+@Slf4j
+class InferenceBatcher implements AutoCloseable {
+
+    /**
+     * Passe forward sur un lot de requêtes -> un score par ligne
+     */
+    @FunctionalInterface
+    interface BatchScorer {
+        float[] score(MlService.FeatureBatch batch) throws Exception;
+    }
+
+    private final BatchScorer scorer;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<PendingScore> queue;
+    private final Thread dispatcher;
+    private final Scheduler scoringScheduler;
+    private final Semaphore workers;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSize;
+    private final Timer queueWait;
+    private final Timer forwardPass;
+
+    InferenceBatcher(BatchScorer scorer, int maxBatchSize, Duration maxWait, int queueCapacity,
+            int parallelism, MeterRegistry meterRegistry) {
+        this.scorer = scorer;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.scoringScheduler = Schedulers.newParallel("ml-scoring", parallelism, true);
+        this.workers = new Semaphore(parallelism);
+
+        this.batchSize = DistributionSummary.builder("fraud.inference.batch.size")
+                .description("Nombre de lignes par passe ONNX")
+                .publishPercentileHistogram()
+                .serviceLevelObjectives(1, 2, 4, 8, 16, 32, 64, 128, 256)
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("fraud.inference.queue.wait")
+                .description("Temps passé dans la file avant la passe ONNX")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.forwardPass = Timer.builder("fraud.inference.batch.latency")
+                .description("Durée d'une passe ONNX sur un lot")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("fraud.inference.queue.depth", queue, BlockingQueue::size);
+
+        this.dispatcher = new Thread(this::dispatchLoop, "inference-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Met en file une requête ; ses 6 features sont encodées au moment du lot
+     * et le Mono est complété sur un thread "ml-scoring" avec son score,
+     * jamais sur l'event loop.
+     */
+    Mono<Float> submit(FraudRequest request) {
+        return Mono.create(sink -> {
+            if (!running) {
+                sink.error(new IllegalStateException("Inference batcher is shut down"));
+                return;
+            }
+            if (!queue.offer(new PendingScore(request, sink, System.nanoTime()))) {
+                sink.error(new RejectedExecutionException("Inference queue is full"));
+            }
+        });
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            List<PendingScore> batch = new ArrayList<>(maxBatchSize);
+            try {
+                PendingScore first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Attendre un worker libre : pendant ce temps la file se remplit
+                workers.acquire();
+                long deadline = first.enqueuedAt() + maxWaitNanos;
+
+                // Remplir le lot jusqu'à maxBatchSize ou jusqu'à l'échéance de la 1ère demande
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingScore next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                scoringScheduler.schedule(() -> {
+                    try {
+                        runBatch(batch);
+                    } finally {
+                        workers.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.sink()
+                        .error(new IllegalStateException("Inference batcher is shut down")));
+                break;
+            } catch (Exception e) {
+                log.error("Inference batch dispatch failed", e);
+                workers.release();
+                batch.forEach(pending -> pending.sink().error(e));
+            }
+        }
+    }
+
+    private void runBatch(List<PendingScore> batch) {
+        int rows = batch.size();
+        long dispatchedAt = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            queueWait.record(dispatchedAt - batch.get(i).enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(rows);
+
+        float[] scores;
+        try {
+            scores = scorer.score(new PendingBatch(batch));
+        } catch (Exception e) {
+            log.error("❌ Batch prediction failed for {} rows: {}", rows, e.getMessage(), e);
+            batch.forEach(pending -> pending.sink().error(e));
+            return;
+        } finally {
+            forwardPass.record(System.nanoTime() - dispatchedAt, TimeUnit.NANOSECONDS);
+        }
+
+        for (int i = 0; i < rows; i++) {
+            batch.get(i).sink().success(scores[i]);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        scoringScheduler.dispose();
+        List<PendingScore> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(pending -> pending.sink()
+                .error(new IllegalStateException("Inference batcher is shut down")));
+    }
+
+    private record PendingScore(FraudRequest request, MonoSink<Float> sink, long enqueuedAt) {
+    }
+
+    private record PendingBatch(List<PendingScore> items) implements MlService.FeatureBatch {
+        @Override
+        public int rows() {
+            return items.size();
+        }
+
+        @Override
+        public FraudRequest row(int index) {
+            return items.get(index).request();
+        }
+    }
+}
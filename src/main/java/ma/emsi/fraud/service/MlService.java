@@ -1,89 +1,147 @@
 package ma.emsi.fraud.service;
 
-import ai.djl.Model;
-import ai.djl.inference.Predictor;
-import ai.djl.ndarray.NDArray;
-import ai.djl.ndarray.NDList;
-import ai.djl.ndarray.NDManager;
-import ai.djl.translate.Batchifier;
-import ai.djl.translate.Translator;
-import ai.djl.translate.TranslatorContext;
+import ai.djl.translate.TranslateException;
 import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudRequest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class MlService {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${fraud.model.path}")
     private String modelPath;
 
-    private Predictor<float[], Float> predictor;
-    private Model model;
+    @Value("${fraud.inference.batch.max-size:64}")
+    private int maxBatchSize;
+
+    @Value("${fraud.inference.batch.max-wait:2ms}")
+    private Duration maxBatchWait;
+
+    @Value("${fraud.inference.batch.queue-capacity:10000}")
+    private int batchQueueCapacity;
+
+    // 0 = un Predictor par coeur
+    @Value("${fraud.inference.pool.size:0}")
+    private int poolSize;
+
+    // Threads ONNX Runtime par passe : 1 pour que le parallélisme vienne du pool
+    @Value("${fraud.inference.intra-op-threads:1}")
+    private int intraOpThreads;
+
+    // Répertoire des versions : surveillé, sert aussi à /api/v1/models
+    @Value("${fraud.model.dir:models}")
+    private String modelDir;
+
+    @Value("${fraud.model.watch:true}")
+    private boolean watchModels;
+
+    @Value("${fraud.model.warmup-batches:32}")
+    private int warmupBatches;
+
+    // Part des lots aussi évalués par le modèle shadow
+    @Value("${fraud.model.shadow.sample-rate:0.05}")
+    private double shadowSampleRate;
+
+    // Tout nouveau .onnx déposé dans le répertoire devient la candidate shadow
+    @Value("${fraud.model.shadow.auto:true}")
+    private boolean autoShadow;
+
+    @Value("${fraud.risk.threshold:0.0001}")
+    private double riskThreshold;
+
+    private ModelRegistry registry;
+    private InferenceBatcher batcher;
+    private Timer scoreLatency;
+    private Timer bulkLatency;
+    private Scheduler bulkScheduler;
 
     /**
      * Charge le modèle ONNX au démarrage de l'application
      */
     @PostConstruct
     public void loadModel() throws Exception {
-        log.info("Loading ONNX model from: {}", modelPath);
-
-        Path path = Paths.get(modelPath);
-
-        // Définition du Translator pour convertir les données
-        Translator<float[], Float> translator = new Translator<>() {
-            @Override
-            public NDList processInput(TranslatorContext ctx, float[] input) {
-                NDManager manager = ctx.getNDManager();
-                // Créer directement un tableau 2D [1, 6] pour 6 features
-                float[][] input2D = new float[1][6];
-                System.arraycopy(input, 0, input2D[0], 0, 6);
-                NDArray array = manager.create(input2D);
-                return new NDList(array);
-            }
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ModelRegistry.Settings settings = new ModelRegistry.Settings(
+                modelDir == null || modelDir.isBlank() ? null : Paths.get(modelDir).toAbsolutePath().normalize(),
+                size, intraOpThreads, warmupBatches, maxBatchSize, shadowSampleRate, autoShadow, watchModels,
+                riskThreshold);
+
+        // Translator sans état partagé par toutes les versions : lot [N, 6] -> N scores
+        registry = new ModelRegistry(Paths.get(modelPath), settings, new ScoreTranslator(), meterRegistry);
+        scoreLatency = Timer.builder("fraud.inference.score.latency")
+                .description("Durée d'un score : file du batcher + passe ONNX")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        bulkLatency = Timer.builder("fraud.inference.bulk.latency")
+                .description("Durée d'une passe ONNX bulk (lot complet)")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        bulkScheduler = Schedulers.newSingle("ml-bulk", true);
+        batcher = new InferenceBatcher(this::predictBatch, maxBatchSize, maxBatchWait, batchQueueCapacity,
+                size, meterRegistry);
+
+        log.info("✅ ONNX model loaded successfully! (predictors={}, batch max-size={}, max-wait={})",
+                size, maxBatchSize, maxBatchWait);
+    }
 
-            @Override
-            public Float processOutput(TranslatorContext ctx, NDList list) {
-                // Le modèle RandomForest retourne 2 sorties :
-                // - Sortie 0 : labels (int64) - classe prédite (0 ou 1)
-                // - Sortie 1 : probabilities (float) - probabilités [proba_0, proba_1]
-
-                try {
-                    // Essayer d'abord d'obtenir les probabilités (sortie 1)
-                    if (list.size() > 1) {
-                        float[] probabilities = list.get(1).toFloatArray();
-                        return probabilities.length > 1 ? probabilities[1] : probabilities[0];
-                    }
-
-                    // Sinon, utiliser la classe prédite (0 ou 1) comme score
-                    long[] labels = list.get(0).toLongArray();
-                    return labels.length > 0 ? (float) labels[0] : 0.0f;
-                } catch (Exception e) {
-                    // Fallback : retourner 0.5 (incertain)
-                    return 0.5f;
-                }
-            }
+    /**
+     * Versions de modèle servies (active, shadow) et leur gestion à chaud
+     */
+    public ModelRegistry registry() {
+        return registry;
+    }
 
-            @Override
-            public Batchifier getBatchifier() {
-                // ONNX Runtime ne supporte pas STACK, on utilise NONE
-                return null; // null = pas de batching
+    /**
+     * Score asynchrone : la requête est regroupée avec les appels concurrents
+     * dans un même tenseur [N, 6] par {@link InferenceBatcher}. Une requête
+     * incomplète est refusée ici, seule, sans entrer dans un lot.
+     *
+     * @return Mono complété avec le score de fraude (0.0 à 1.0) de cette requête
+     */
+    public Mono<Float> score(FraudRequest request) {
+        return Mono.defer(() -> {
+            if (!FeatureEncoder.isScorable(request)) {
+                return Mono.error(new IllegalArgumentException("amount, oldBalance and newBalance are required"));
             }
-        };
-
-        // Chargement du modèle
-        model = Model.newInstance("fraud-detection");
-        model.load(path);
-
-        predictor = model.newPredictor(translator);
+            long start = System.nanoTime();
+            return batcher.submit(request)
+                    .doOnSuccess(score -> scoreLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
 
-        log.info("✅ ONNX model loaded successfully!");
+    /**
+     * Score d'un lot complet en une seule passe ONNX, hors micro-batcher :
+     * pour les traitements de masse, qui ne doivent ni remplir la file des
+     * requêtes interactives ni être découpés en lots de max-size.
+     * Une passe bulk à la fois (thread "ml-bulk").
+     *
+     * @return un score par requête, dans l'ordre de la liste
+     */
+    public Mono<float[]> scoreAll(List<FraudRequest> requests) {
+        return Mono.fromCallable(() -> {
+            long start = System.nanoTime();
+            float[] scores = predictBatch(new RequestList(requests));
+            bulkLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return scores;
+        }).subscribeOn(bulkScheduler);
     }
 
     /**
@@ -101,38 +159,69 @@ public class MlService {
     public float predict(int type, double amount, double oldBalanceOrg, double newBalanceOrig,
             double oldBalanceDest, double newBalanceDest) {
         try {
-            // Préparer le vecteur de 6 features (comme dans le script Python)
-            float[] features = new float[6];
-            features[0] = (float) type; // type encodé
-            features[1] = (float) amount; // amount
-            features[2] = (float) oldBalanceOrg; // oldbalanceOrg
-            features[3] = (float) newBalanceOrig; // newbalanceOrig
-            features[4] = (float) oldBalanceDest; // oldbalanceDest
-            features[5] = (float) newBalanceDest; // newbalanceDest
-
-            log.info("🔍 Predicting with features: [{}, {}, {}, {}, {}, {}]",
-                    features[0], features[1], features[2], features[3], features[4], features[5]);
-
-            // Faire la prédiction
-            float score = predictor.predict(features);
+            FraudRequest request = new FraudRequest(amount, oldBalanceOrg, newBalanceOrig, type,
+                    oldBalanceDest, newBalanceDest, null, null);
 
-            log.info("✅ Prediction score: {}", score);
-
-            return score;
+            return predictBatch(new SingleRow(request))[0];
         } catch (Exception e) {
             log.error("❌ Prediction failed with error: {}", e.getMessage(), e);
             return -1.0f; // Valeur d'erreur
         }
     }
 
+    /**
+     * Une passe ONNX sur un lot de requêtes
+     */
+    float[] predictBatch(FeatureBatch batch) throws TranslateException {
+        // Version active du moment ; le Predictor DJL est emprunté à son pool
+        return registry.predict(batch);
+    }
+
     @PreDestroy
     public void cleanup() {
-        if (predictor != null) {
-            predictor.close();
+        if (batcher != null) {
+            batcher.close();
+        }
+        if (bulkScheduler != null) {
+            bulkScheduler.dispose();
         }
-        if (model != null) {
-            model.close();
+        if (registry != null) {
+            registry.close();
         }
         log.info("ML Service cleaned up");
     }
+
+    /**
+     * Lot de requêtes consommé par le Translator, encodé ligne par ligne
+     * par {@link FeatureEncoder}
+     */
+    interface FeatureBatch {
+        int rows();
+
+        FraudRequest row(int index);
+    }
+
+    private record RequestList(List<FraudRequest> requests) implements FeatureBatch {
+        @Override
+        public int rows() {
+            return requests.size();
+        }
+
+        @Override
+        public FraudRequest row(int index) {
+            return requests.get(index);
+        }
+    }
+
+    private record SingleRow(FraudRequest request) implements FeatureBatch {
+        @Override
+        public int rows() {
+            return 1;
+        }
+
+        @Override
+        public FraudRequest row(int index) {
+            return request;
+        }
+    }
 }
@@ -0,0 +1,348 @@
+package ma.emsi.fraud.service;
+
+import ai.djl.translate.TranslateException;
+import ai.djl.translate.Translator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Versions de modèle ONNX servies par {@link MlService}.
+ * - active : sert toutes les prédictions ; remplacée par échange atomique
+ *   d'une version déjà chargée et chauffée, les passes en cours finissent sur
+ *   l'ancienne (compteur de références de {@link ModelVersion})
+ * - shadow : candidate évaluée en arrière-plan sur une fraction des lots,
+ *   sans effet sur les réponses ; écarts de score et de latence exportés
+ * Le répertoire des modèles est surveillé : un fichier du même nom que le
+ * modèle actif le remplace, tout autre .onnx devient la candidate shadow.
+ */
+@Slf4j
+public class ModelRegistry implements AutoCloseable {
+
+    /**
+     * Paramètres de chargement et de shadow (issus de la configuration MlService)
+     */
+    record Settings(Path directory, int poolSize, int intraOpThreads, int warmupBatches, int warmupMaxRows,
+            double shadowSampleRate, boolean autoShadow, boolean watch, double riskThreshold) {
+    }
+
+    private static final long QUIET_PERIOD_MS = 1000;
+
+    private final Settings settings;
+    private final Translator<MlService.FeatureBatch, float[]> translator;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<ModelVersion> active = new AtomicReference<>();
+    private final AtomicReference<ModelVersion> shadow = new AtomicReference<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Object loadLock = new Object();
+    private final Scheduler shadowScheduler = Schedulers.newBoundedElastic(1, 64, "ml-shadow");
+
+    private final DistributionSummary scoreDelta;
+    private final Counter disagreements;
+    private final Counter shadowSkipped;
+    private final Counter swaps;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    ModelRegistry(Path initialModel, Settings settings, Translator<MlService.FeatureBatch, float[]> translator,
+            MeterRegistry meterRegistry) throws Exception {
+        this.settings = settings;
+        this.translator = translator;
+        this.meterRegistry = meterRegistry;
+
+        this.scoreDelta = DistributionSummary.builder("fraud.model.shadow.score-delta")
+                .description("Écart absolu de score shadow - active, par ligne")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.disagreements = Counter.builder("fraud.model.shadow.disagreements")
+                .description("Lignes où shadow et active donnent un niveau de risque différent")
+                .register(meterRegistry);
+        this.shadowSkipped = Counter.builder("fraud.model.shadow.skipped")
+                .description("Lots échantillonnés non évalués en shadow (évaluation saturée)")
+                .register(meterRegistry);
+        this.swaps = Counter.builder("fraud.model.swaps")
+                .description("Remplacements du modèle actif à chaud")
+                .register(meterRegistry);
+
+        active.set(loadWarm(initialModel));
+        startWatcher();
+    }
+
+    int poolSize() {
+        return settings.poolSize();
+    }
+
+    /**
+     * Passe sur la version active ; échantillonne le lot pour la shadow
+     */
+    float[] predict(MlService.FeatureBatch batch) throws TranslateException {
+        ModelVersion version = acquire(active);
+        float[] scores;
+        try {
+            scores = version.predict(batch);
+        } finally {
+            version.release();
+        }
+        if (shadow.get() != null && ThreadLocalRandom.current().nextDouble() < settings.shadowSampleRate()) {
+            scoreInShadow(batch, scores);
+        }
+        return scores;
+    }
+
+    private static ModelVersion acquire(AtomicReference<ModelVersion> ref) {
+        for (;;) {
+            ModelVersion version = ref.get();
+            // Échec = version retirée entre get() et acquire() : relire la nouvelle
+            if (version != null && version.acquire()) {
+                return version;
+            }
+            if (version == null) {
+                throw new IllegalStateException("No model loaded");
+            }
+        }
+    }
+
+    private void scoreInShadow(MlService.FeatureBatch batch, float[] activeScores) {
+        ModelVersion candidate = shadow.get();
+        if (candidate == null || !candidate.acquire()) {
+            return;
+        }
+        try {
+            shadowScheduler.schedule(() -> {
+                try {
+                    float[] shadowScores = candidate.predict(batch);
+                    for (int i = 0; i < activeScores.length; i++) {
+                        scoreDelta.record(Math.abs(shadowScores[i] - activeScores[i]));
+                        if ((shadowScores[i] > settings.riskThreshold()) != (activeScores[i] > settings.riskThreshold())) {
+                            disagreements.increment();
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("Shadow model {} failed: {}", candidate.id(), e.getMessage());
+                } finally {
+                    candidate.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            candidate.release();
+            shadowSkipped.increment();
+        }
+    }
+
+    /**
+     * Charge, chauffe puis publie un fichier du répertoire comme version active.
+     * Bloquant (chargement + warm-up) : à appeler hors event loop.
+     */
+    public ModelInfo activate(String fileName) throws Exception {
+        Path path = resolve(fileName);
+        synchronized (loadLock) {
+            return swapActive(loadWarm(path));
+        }
+    }
+
+    /**
+     * Charge un fichier du répertoire comme candidate shadow (remplace la précédente)
+     */
+    public ModelInfo loadShadow(String fileName) throws Exception {
+        Path path = resolve(fileName);
+        synchronized (loadLock) {
+            ModelVersion candidate = loadWarm(path);
+            ModelVersion previous = shadow.getAndSet(candidate);
+            if (previous != null) {
+                previous.retire();
+            }
+            log.info("Shadow model is now {} (sample rate {})", candidate.id(), settings.shadowSampleRate());
+            return candidate.info();
+        }
+    }
+
+    /**
+     * Promeut la candidate shadow (déjà chauffée) en version active
+     */
+    public ModelInfo promoteShadow() {
+        synchronized (loadLock) {
+            ModelVersion candidate = shadow.getAndSet(null);
+            if (candidate == null) {
+                throw new IllegalStateException("No shadow model to promote");
+            }
+            return swapActive(candidate);
+        }
+    }
+
+    public void dropShadow() {
+        synchronized (loadLock) {
+            ModelVersion previous = shadow.getAndSet(null);
+            if (previous != null) {
+                previous.retire();
+                log.info("Shadow model {} dropped", previous.id());
+            }
+        }
+    }
+
+    public Status status() {
+        ModelVersion candidate = shadow.get();
+        return new Status(active.get().info(), candidate != null ? candidate.info() : null,
+                settings.shadowSampleRate(), availableFiles());
+    }
+
+    private ModelInfo swapActive(ModelVersion next) {
+        ModelVersion previous = active.getAndSet(next);
+        swaps.increment();
+        log.info("✅ Active model swapped: {} -> {} (warm-up {} ms)",
+                previous != null ? previous.id() : "none", next.id(), next.info().warmupMillis());
+        if (previous != null) {
+            previous.retire();
+        }
+        return next.info();
+    }
+
+    private ModelVersion loadWarm(Path path) throws Exception {
+        String id = path.getFileName() + "#" + versionSequence.incrementAndGet();
+        log.info("Loading ONNX model {} from: {}", id, path);
+        ModelVersion version = ModelVersion.load(id, path, translator, settings.poolSize(),
+                settings.intraOpThreads(), meterRegistry);
+        try {
+            version.warmUp(settings.warmupBatches(), settings.warmupMaxRows());
+        } catch (Exception e) {
+            version.retire();
+            throw e;
+        }
+        return version;
+    }
+
+    private Path resolve(String fileName) {
+        if (settings.directory() == null) {
+            throw new IllegalArgumentException("No model directory configured");
+        }
+        Path path = settings.directory().resolve(fileName).normalize();
+        if (!path.startsWith(settings.directory()) || !fileName.endsWith(".onnx") || !Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Unknown model file: " + fileName);
+        }
+        return path;
+    }
+
+    private List<String> availableFiles() {
+        List<String> files = new ArrayList<>();
+        if (settings.directory() == null) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(settings.directory(), "*.onnx")) {
+            stream.forEach(path -> files.add(path.getFileName().toString()));
+        } catch (IOException e) {
+            log.warn("Cannot list model directory {}: {}", settings.directory(), e.getMessage());
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private void startWatcher() throws IOException {
+        if (!settings.watch() || settings.directory() == null || !Files.isDirectory(settings.directory())) {
+            log.info("Model directory watch disabled (directory: {})", settings.directory());
+            return;
+        }
+        watchService = settings.directory().getFileSystem().newWatchService();
+        settings.directory().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::watchLoop, "model-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching {} for new model versions", settings.directory());
+    }
+
+    /**
+     * Regroupe les événements par fichier et n'agit qu'après QUIET_PERIOD_MS
+     * sans écriture, pour ne pas charger un fichier en cours de copie
+     */
+    private void watchLoop() {
+        Map<String, Long> changed = new HashMap<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(250, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path name && name.toString().endsWith(".onnx")) {
+                            changed.put(name.toString(), System.currentTimeMillis());
+                        }
+                    }
+                    key.reset();
+                }
+                long now = System.currentTimeMillis();
+                changed.entrySet().removeIf(entry -> {
+                    if (now - entry.getValue() < QUIET_PERIOD_MS) {
+                        return false;
+                    }
+                    onFileChanged(entry.getKey());
+                    return true;
+                });
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void onFileChanged(String fileName) {
+        try {
+            if (fileName.equals(active.get().file())) {
+                log.info("Active model file {} changed, reloading", fileName);
+                activate(fileName);
+            } else if (settings.autoShadow()) {
+                log.info("New model file {} detected, loading as shadow", fileName);
+                loadShadow(fileName);
+            } else {
+                log.info("New model file {} available (activate it via /api/v1/models)", fileName);
+            }
+        } catch (Exception e) {
+            log.error("❌ Cannot load model file {}: {}", fileName, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Cannot close model watch service", e);
+            }
+        }
+        shadowScheduler.dispose();
+        dropShadow();
+        ModelVersion current = active.getAndSet(null);
+        if (current != null) {
+            current.retire();
+        }
+    }
+
+    public record ModelInfo(String id, String file, String path, Instant loadedAt, long warmupMillis,
+            int inFlight) {
+    }
+
+    public record Status(ModelInfo active, ModelInfo shadow, double shadowSampleRate, List<String> available) {
+    }
+}
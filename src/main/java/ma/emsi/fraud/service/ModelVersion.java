@@ -0,0 +1,154 @@
+package ma.emsi.fraud.service;
+
+import ai.djl.Model;
+import ai.djl.translate.TranslateException;
+import ai.djl.translate.Translator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudRequest;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Une version chargée d'un modèle ONNX : Model DJL + pool de Predictors.
+ * Compteur de références : le registre en détient une tant que la version est
+ * publiée, chaque prédiction en prend une le temps de la passe. Retirée du
+ * registre, la version n'est fermée qu'après la fin de la dernière prédiction.
+ */
+@Slf4j
+class ModelVersion {
+
+    private final String id;
+    private final String file;
+    private final Path path;
+    private final Instant loadedAt = Instant.now();
+    private final Model model;
+    private final PredictorPool<MlService.FeatureBatch, float[]> predictors;
+    private final Timer latency;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private volatile long warmupMillis;
+
+    private ModelVersion(String id, Path path, Model model,
+            PredictorPool<MlService.FeatureBatch, float[]> predictors, Timer latency, MeterRegistry meterRegistry) {
+        this.id = id;
+        this.file = path.getFileName().toString();
+        this.path = path;
+        this.model = model;
+        this.predictors = predictors;
+        this.latency = latency;
+        this.meterRegistry = meterRegistry;
+    }
+
+    static ModelVersion load(String id, Path path, Translator<MlService.FeatureBatch, float[]> translator,
+            int poolSize, int intraOpThreads, MeterRegistry meterRegistry) throws Exception {
+        Model model = Model.newInstance("fraud-detection");
+        try {
+            model.load(path, null, Map.of(
+                    "interOpNumThreads", "1",
+                    "intraOpNumThreads", String.valueOf(intraOpThreads)));
+            PredictorPool<MlService.FeatureBatch, float[]> predictors = new PredictorPool<>(model, translator,
+                    poolSize, id, meterRegistry);
+            Timer latency = Timer.builder("fraud.model.latency")
+                    .description("Durée d'une passe ONNX par version de modèle")
+                    .tag("model", id)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            return new ModelVersion(id, path, model, predictors, latency, meterRegistry);
+        } catch (Exception e) {
+            model.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Passes sur des lots synthétiques de 1 à maxRows lignes avant publication,
+     * pour que le JIT et ONNX Runtime soient chauds quand le trafic arrive
+     */
+    void warmUp(int batches, int maxRows) throws TranslateException {
+        long start = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            predictors.predict(new SyntheticBatch(1 + i % Math.max(1, maxRows), i));
+        }
+        warmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * À appeler entre acquire() et release()
+     */
+    float[] predict(MlService.FeatureBatch batch) throws TranslateException {
+        long start = System.nanoTime();
+        try {
+            return predictors.predict(batch);
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Prend une référence ; false si la version est déjà fermée
+     */
+    boolean acquire() {
+        for (;;) {
+            int current = refs.get();
+            if (current == 0) {
+                return false;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            predictors.close();
+            model.close();
+            // Série par version : retirée avec elle pour ne pas accumuler les versions passées
+            meterRegistry.remove(latency);
+            log.info("Model version {} closed", id);
+        }
+    }
+
+    /**
+     * Rend la référence du registre : fermeture dès que les passes en cours sont finies
+     */
+    void retire() {
+        release();
+    }
+
+    String id() {
+        return id;
+    }
+
+    String file() {
+        return file;
+    }
+
+    ModelRegistry.ModelInfo info() {
+        return new ModelRegistry.ModelInfo(id, file, path.toString(), loadedAt, warmupMillis,
+                Math.max(0, refs.get() - 1));
+    }
+
+    /**
+     * Requête plausible variée (types 0-4, comptes vidés ou non), aussi
+     * utilisée par {@link WarmupRunner}
+     */
+    static FraudRequest syntheticRequest(int n) {
+        double amount = 100.0 * (1 + n % 997);
+        double oldBalance = n % 3 == 0 ? amount : amount * 4;
+        return new FraudRequest(amount, oldBalance, oldBalance - amount, n % 5, 0.0, amount, null, null);
+    }
+
+    private record SyntheticBatch(int rows, int seed) implements MlService.FeatureBatch {
+        @Override
+        public FraudRequest row(int index) {
+            return syntheticRequest(seed + index);
+        }
+    }
+}
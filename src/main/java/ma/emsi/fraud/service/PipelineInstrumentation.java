@@ -0,0 +1,129 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.DecisionPath;
+import ma.emsi.fraud.model.FraudRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure par étage du pipeline /fraud/check :
+ * - fraud.check.stage{stage=velocity|rules|model|enrichment|audit} : durée de chaque étage
+ * - fraud.check.latency{path} : durée totale de la décision, par chemin
+ * - fraud.bulk.rows{mode=online|offline} : lignes reçues par /fraud/bulk
+ * - traces échantillonnées (fraud.trace.sample-rate) : une ligne clé=valeur par
+ *   requête tirée, sur le logger "fraud.trace". À 0, aucune allocation ni tirage.
+ */
+@Component
+@Slf4j(topic = "fraud.trace")
+public class PipelineInstrumentation {
+
+    public enum Stage {
+        VELOCITY, RULES, MODEL, ENRICHMENT, AUDIT;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final Map<DecisionPath, Timer> totals = new EnumMap<>(DecisionPath.class);
+    private final Counter bulkOnline;
+    private final Counter bulkOffline;
+    private final double sampleRate;
+
+    public PipelineInstrumentation(MeterRegistry meterRegistry,
+            @Value("${fraud.trace.sample-rate:0}") double sampleRate) {
+        this.sampleRate = sampleRate;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("fraud.check.stage")
+                    .description("Durée de chaque étage de la décision de fraude")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.bulkOnline = bulkCounter(meterRegistry, "online");
+        this.bulkOffline = bulkCounter(meterRegistry, "offline");
+        for (DecisionPath path : DecisionPath.values()) {
+            totals.put(path, Timer.builder("fraud.check.latency")
+                    .description("Durée totale de la décision (hors encodage de la réponse)")
+                    .tag("path", path.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private static Counter bulkCounter(MeterRegistry meterRegistry, String mode) {
+        return Counter.builder("fraud.bulk.rows")
+                .description("Lignes décidées par le endpoint bulk")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    public void bulkRows(int rows, boolean offline) {
+        (offline ? bulkOffline : bulkOnline).increment(rows);
+    }
+
+    /**
+     * Trace de cette requête si elle est tirée, null sinon
+     */
+    public Trace startTrace() {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return new Trace();
+    }
+
+    /**
+     * Enregistre l'étage commencé à {@code startNanos} ; retourne l'instant de fin
+     */
+    public long stage(Stage stage, long startNanos, Trace trace) {
+        long now = System.nanoTime();
+        long elapsed = now - startNanos;
+        stages.get(stage).record(elapsed, TimeUnit.NANOSECONDS);
+        if (trace != null) {
+            trace.stageNanos[stage.ordinal()] = elapsed;
+        }
+        return now;
+    }
+
+    /**
+     * Durée totale de la décision ; émet la trace si la requête est tirée
+     */
+    public void finish(long startNanos, DecisionPath path, float score, String risk, FraudRequest request,
+            Trace trace) {
+        long elapsed = System.nanoTime() - startNanos;
+        totals.get(path).record(elapsed, TimeUnit.NANOSECONDS);
+        if (trace != null) {
+            log.info("fraud_check path={} risk={} score={} type={} amount={} total_us={} velocity_us={} rules_us={}"
+                    + " model_us={} enrichment_us={} audit_us={}",
+                    path, risk, score, request.type(), request.amount(), elapsed / 1000,
+                    trace.micros(Stage.VELOCITY), trace.micros(Stage.RULES), trace.micros(Stage.MODEL), trace.micros(Stage.ENRICHMENT),
+                    trace.micros(Stage.AUDIT));
+        }
+    }
+
+    /**
+     * Durées par étage d'une requête échantillonnée (-1 = étage non traversé)
+     */
+    public static final class Trace {
+        private final long[] stageNanos = new long[Stage.values().length];
+
+        private Trace() {
+            Arrays.fill(stageNanos, -1);
+        }
+
+        private long micros(Stage stage) {
+            long nanos = stageNanos[stage.ordinal()];
+            return nanos < 0 ? -1 : nanos / 1000;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ma.emsi.fraud.service;
+
+import ai.djl.Model;
+import ai.djl.inference.Predictor;
+import ai.djl.translate.TranslateException;
+import ai.djl.translate.Translator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool de Predictors DJL construits à partir d'un seul Model chargé.
+ * Un Predictor n'est pas thread-safe : chaque emprunt donne l'usage exclusif
+ * d'un Predictor jusqu'à sa restitution ; DJL ouvre déjà un NDManager enfant
+ * par appel à predict et le ferme ensuite, le pool n'en gère donc pas.
+ * L'emprunt ne bloque jamais : si tous les Predictors sont pris, un autre
+ * temporaire est créé puis fermé (compté dans fraud.inference.pool.overflow).
+ * Les métriques portent le tag model (version chargée) et sont retirées à la fermeture.
+ */
+@Slf4j
+class PredictorPool<I, O> implements AutoCloseable {
+
+    private final Model model;
+    private final Translator<I, O> translator;
+    private final List<Predictor<I, O>> predictors;
+    private final Queue<Predictor<I, O>> idle = new ConcurrentLinkedQueue<>();
+    private final Counter overflow;
+    private final Gauge idleGauge;
+    private final MeterRegistry meterRegistry;
+
+    PredictorPool(Model model, Translator<I, O> translator, int size, String modelTag, MeterRegistry meterRegistry) {
+        this.model = model;
+        this.translator = translator;
+        this.predictors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Predictor<I, O> predictor = model.newPredictor(translator);
+            predictors.add(predictor);
+            idle.offer(predictor);
+        }
+        this.meterRegistry = meterRegistry;
+        this.overflow = Counter.builder("fraud.inference.pool.overflow")
+                .description("Prédictions servies par un Predictor temporaire (pool épuisé)")
+                .tag("model", modelTag)
+                .register(meterRegistry);
+        this.idleGauge = Gauge.builder("fraud.inference.pool.idle", idle, Queue::size)
+                .tag("model", modelTag)
+                .register(meterRegistry);
+        log.info("Predictor pool for {} ready with {} predictors", modelTag, size);
+    }
+
+    int size() {
+        return predictors.size();
+    }
+
+    /**
+     * Exécute une prédiction avec un Predictor emprunté au pool
+     */
+    O predict(I input) throws TranslateException {
+        Predictor<I, O> predictor = idle.poll();
+        if (predictor == null) {
+            overflow.increment();
+            try (Predictor<I, O> temporary = model.newPredictor(translator)) {
+                return temporary.predict(input);
+            }
+        }
+        try {
+            return predictor.predict(input);
+        } finally {
+            idle.offer(predictor);
+        }
+    }
+
+    @Override
+    public void close() {
+        predictors.forEach(Predictor::close);
+        idle.clear();
+        meterRegistry.remove(overflow);
+        meterRegistry.remove(idleGauge);
+    }
+}
@@ -0,0 +1,59 @@
+package ma.emsi.fraud.service;
+
+import ma.emsi.fraud.model.FraudCheck;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Derniers événements SSE diffusés, pour la reprise Last-Event-ID.
+ * Taille fixe : la mémoire ne dépend ni du trafic ni du nombre de clients.
+ * Non thread-safe : protégé par le verrou de {@link FraudStreamService}.
+ */
+class ReplayRing {
+
+    private final long[] ids;
+    private final FraudCheck[] checks;
+    private int next;
+    private int size;
+
+    ReplayRing(int capacity) {
+        this.ids = new long[capacity];
+        this.checks = new FraudCheck[capacity];
+    }
+
+    void add(long eventId, FraudCheck check) {
+        if (ids.length == 0) {
+            return;
+        }
+        ids[next] = eventId;
+        checks[next] = check;
+        next = (next + 1) % ids.length;
+        size = Math.min(size + 1, ids.length);
+    }
+
+    /**
+     * Plus ancien id encore rejouable, ou -1 si l'anneau est vide
+     */
+    long oldestId() {
+        return size == 0 ? -1 : ids[(next - size + ids.length) % ids.length];
+    }
+
+    /**
+     * Événements d'id strictement supérieur à afterId acceptés par le filtre, dans l'ordre
+     */
+    List<Entry> after(long afterId, Predicate<FraudCheck> filter) {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int index = (next - size + i + ids.length) % ids.length;
+            if (ids[index] > afterId && filter.test(checks[index])) {
+                entries.add(new Entry(ids[index], checks[index]));
+            }
+        }
+        return entries;
+    }
+
+    record Entry(long eventId, FraudCheck check) {
+    }
+}
@@ -0,0 +1,76 @@
+package ma.emsi.fraud.service;
+
+/**
+ * Fenêtre glissante en ring buffer : {@code buckets} tranches de
+ * {@code bucketMillis}. Une tranche est remise à zéro quand le temps la
+ * réutilise, la lecture ne somme que les tranches encore dans la fenêtre.
+ * {@link #state()} / {@link #restore(State)} copient les tranches pour le
+ * passage de relais entre instances (mode cluster).
+ */
+class RollingWindow {
+
+    private final long bucketMillis;
+    private final long[] epochs;
+    private final long[] totals;
+    private final long[] highs;
+    private final double[] scoreSums;
+
+    RollingWindow(int buckets, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.epochs = new long[buckets];
+        this.totals = new long[buckets];
+        this.highs = new long[buckets];
+        this.scoreSums = new double[buckets];
+    }
+
+    private RollingWindow(State state) {
+        this.bucketMillis = state.bucketMillis();
+        this.epochs = state.epochs().clone();
+        this.totals = state.totals().clone();
+        this.highs = state.highs().clone();
+        this.scoreSums = state.scoreSums().clone();
+    }
+
+    static RollingWindow restore(State state) {
+        return new RollingWindow(state);
+    }
+
+    synchronized State state() {
+        return new State(bucketMillis, epochs.clone(), totals.clone(), highs.clone(), scoreSums.clone());
+    }
+
+    synchronized void add(long nowMillis, long total, long high, double scoreSum) {
+        long epoch = nowMillis / bucketMillis;
+        int index = (int) (epoch % epochs.length);
+        if (epochs[index] != epoch) {
+            epochs[index] = epoch;
+            totals[index] = 0;
+            highs[index] = 0;
+            scoreSums[index] = 0;
+        }
+        totals[index] += total;
+        highs[index] += high;
+        scoreSums[index] += scoreSum;
+    }
+
+    synchronized FraudStatsService.Stats snapshot(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - epochs.length + 1;
+        long total = 0;
+        long high = 0;
+        double scoreSum = 0;
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] >= oldest) {
+                total += totals[i];
+                high += highs[i];
+                scoreSum += scoreSums[i];
+            }
+        }
+        return FraudStatsService.Stats.of(total, high, total - high, scoreSum);
+    }
+
+    /**
+     * Copie sérialisable (JSON) des tranches
+     */
+    record State(long bucketMillis, long[] epochs, long[] totals, long[] highs, double[] scoreSums) {
+    }
+}
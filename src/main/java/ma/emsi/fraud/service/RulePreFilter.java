@@ -0,0 +1,108 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.DecisionPath;
+import ma.emsi.fraud.model.FraudRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Règles évaluées avant l'enrichissement et le modèle, en quelques
+ * comparaisons sur la requête. Court-circuite les cas évidents :
+ * - types que le modèle PaySim ne signale quasiment jamais (PAYMENT, DEBIT, CASH_IN) -> LOW
+ * - TRANSFER / CASH_OUT qui vident le compte d'origine -> HIGH
+ * Tout le reste passe par le pipeline complet, y compris un type absent ou
+ * inconnu (aucune règle ne s'applique).
+ */
+@Component
+@Slf4j
+public class RulePreFilter {
+
+    private static final float SAFE_SCORE = 0.0f;
+    private static final float FRAUD_SCORE = 1.0f;
+
+    private final boolean enabled;
+    private final Set<Integer> safeTypes;
+    private final Set<Integer> drainTypes;
+    private final double drainMinRatio;
+
+    private final Counter safeHits;
+    private final Counter fraudHits;
+    private final Counter passed;
+
+    public RulePreFilter(MeterRegistry meterRegistry,
+            @Value("${fraud.rules.enabled:true}") boolean enabled,
+            @Value("${fraud.rules.safe-types:0,3,4}") List<Integer> safeTypes,
+            @Value("${fraud.rules.drain-types:1,2}") List<Integer> drainTypes,
+            @Value("${fraud.rules.drain-min-ratio:0.99}") double drainMinRatio) {
+        this.enabled = enabled;
+        this.safeTypes = Set.copyOf(safeTypes);
+        this.drainTypes = Set.copyOf(drainTypes);
+        this.drainMinRatio = drainMinRatio;
+
+        this.safeHits = decisions(meterRegistry, DecisionPath.RULE_SAFE.name());
+        this.fraudHits = decisions(meterRegistry, DecisionPath.RULE_FRAUD.name());
+        this.passed = decisions(meterRegistry, "PASS");
+        log.info("Rule pre-filter {} (safe types {}, drain types {}, drain ratio {})",
+                enabled ? "enabled" : "disabled", this.safeTypes, this.drainTypes, drainMinRatio);
+    }
+
+    /**
+     * Décision immédiate si une règle s'applique, sinon vide (pipeline complet)
+     */
+    public Optional<RuleDecision> evaluate(FraudRequest request) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        if (request.type() == null) {
+            passed.increment();
+            return Optional.empty();
+        }
+        int type = request.type();
+
+        if (drainTypes.contains(type) && drainsAccount(request)) {
+            fraudHits.increment();
+            return Optional.of(new RuleDecision(FRAUD_SCORE, DecisionPath.RULE_FRAUD));
+        }
+        if (safeTypes.contains(type)) {
+            safeHits.increment();
+            return Optional.of(new RuleDecision(SAFE_SCORE, DecisionPath.RULE_SAFE));
+        }
+        passed.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Type où se concentre la fraude (TRANSFER / CASH_OUT par défaut)
+     */
+    public boolean isRiskyType(Integer type) {
+        return type != null && drainTypes.contains(type);
+    }
+
+    /**
+     * Solde d'origine non nul, ramené à zéro, par un montant couvrant
+     * (presque) tout le solde : le schéma de fraude dominant du jeu PaySim
+     */
+    private boolean drainsAccount(FraudRequest request) {
+        double oldBalance = request.oldBalance() != null ? request.oldBalance() : 0.0;
+        double newBalance = request.newBalance() != null ? request.newBalance() : 0.0;
+        double amount = request.amount() != null ? request.amount() : 0.0;
+        return oldBalance > 0 && newBalance <= 0.0 && amount >= oldBalance * drainMinRatio;
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("fraud.rules.decisions")
+                .description("Requêtes décidées (ou non) par le pré-filtre de règles")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public record RuleDecision(float score, DecisionPath path) {
+    }
+}
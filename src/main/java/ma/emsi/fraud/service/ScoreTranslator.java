@@ -0,0 +1,71 @@
+package ma.emsi.fraud.service;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Translator DJL : un lot [N, 6] en N scores de fraude.
+ * Sans état, partagé par toutes les versions de modèle.
+ */
+class ScoreTranslator implements Translator<MlService.FeatureBatch, float[]> {
+
+    @Override
+    public NDList processInput(TranslatorContext ctx, MlService.FeatureBatch input) {
+        NDManager manager = ctx.getNDManager();
+        int rows = input.rows();
+        // Tenseur 2D [N, 6] écrit directement dans le buffer direct du thread
+        FloatBuffer data = FeatureEncoder.buffer(rows);
+        for (int i = 0; i < rows; i++) {
+            FeatureEncoder.encode(input.row(i), data, i);
+        }
+        NDArray array = manager.create(data, new Shape(rows, FeatureEncoder.FEATURES));
+        ctx.setAttachment("batch", input);
+        return new NDList(array);
+    }
+
+    @Override
+    public float[] processOutput(TranslatorContext ctx, NDList list) {
+        // Le modèle RandomForest retourne 2 sorties :
+        // - Sortie 0 : labels (int64) [N] - classe prédite (0 ou 1)
+        // - Sortie 1 : probabilities (float) [N, 2] - probabilités [proba_0, proba_1]
+        int rows = ((MlService.FeatureBatch) ctx.getAttachment("batch")).rows();
+        float[] scores = new float[rows];
+
+        try {
+            // Essayer d'abord d'obtenir les probabilités (sortie 1)
+            if (list.size() > 1) {
+                float[] probabilities = list.get(1).toFloatArray();
+                int stride = probabilities.length / rows;
+                for (int i = 0; i < rows; i++) {
+                    scores[i] = stride > 1 ? probabilities[i * stride + 1] : probabilities[i];
+                }
+                return scores;
+            }
+
+            // Sinon, utiliser la classe prédite (0 ou 1) comme score
+            long[] labels = list.get(0).toLongArray();
+            for (int i = 0; i < rows && i < labels.length; i++) {
+                scores[i] = (float) labels[i];
+            }
+            return scores;
+        } catch (Exception e) {
+            // Fallback : retourner 0.5 (incertain)
+            Arrays.fill(scores, 0.5f);
+            return scores;
+        }
+    }
+
+    @Override
+    public Batchifier getBatchifier() {
+        // Le lot est déjà un tenseur [N, 6] construit par InferenceBatcher
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package ma.emsi.fraud.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulation des APIs externes (200ms par défaut) basée sur un timer Reactor :
+ * l'attente ne bloque aucun thread, contrairement à Thread.sleep.
+ */
+@Component
+@ConditionalOnProperty(name = "fraud.enrichment.client", havingValue = "simulated", matchIfMissing = true)
+@Slf4j
+public class SimulatedEnrichmentClient implements EnrichmentClient {
+
+    @Value("${fraud.enrichment.simulated.latency:200ms}")
+    private Duration latency;
+
+    @Override
+    public Mono<Boolean> isProxy(String ip) {
+        return Mono.delay(latency)
+                .map(tick -> ThreadLocalRandom.current().nextBoolean())
+                .doOnNext(isProxy -> log.debug("IP Check completed: isProxy={}", isProxy));
+    }
+
+    @Override
+    public Mono<Boolean> isEmailLeaked(String email) {
+        return Mono.delay(latency)
+                .map(tick -> ThreadLocalRandom.current().nextBoolean())
+                .doOnNext(isLeaked -> log.debug("Email Check completed: isLeaked={}", isLeaked));
+    }
+}
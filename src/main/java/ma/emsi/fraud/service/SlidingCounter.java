@@ -0,0 +1,69 @@
+package ma.emsi.fraud.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compteur + somme sur fenêtre glissante, sans verrou : ring de {@code buckets}
+ * tranches de {@code bucketMillis}, chacune marquée par son époque. La première
+ * écriture dans une tranche expirée la remet à zéro (CAS sur l'époque) ; un
+ * ajout concurrent à cette remise à zéro peut être perdu, l'erreur reste bornée
+ * à la frontière d'une tranche. Lecture O(buckets), sans allocation.
+ */
+class SlidingCounter {
+
+    private final long bucketMillis;
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray counts;
+    // Montants en centimes : addition atomique exacte
+    private final AtomicLongArray cents;
+
+    SlidingCounter(int buckets, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.epochs = new AtomicLongArray(buckets);
+        this.counts = new AtomicLongArray(buckets);
+        this.cents = new AtomicLongArray(buckets);
+    }
+
+    /**
+     * Ajoute un événement à l'instant donné ; ignoré s'il est déjà sorti du ring
+     */
+    void add(long timeMillis, double amount) {
+        long epoch = timeMillis / bucketMillis;
+        int index = (int) (epoch % epochs.length());
+        long seen = epochs.get(index);
+        if (seen != epoch) {
+            if (seen > epoch) {
+                // Tranche déjà réutilisée par un temps plus récent (rejeu d'un vieil événement)
+                return;
+            }
+            if (epochs.compareAndSet(index, seen, epoch)) {
+                counts.set(index, 0);
+                cents.set(index, 0);
+            }
+        }
+        counts.incrementAndGet(index);
+        cents.addAndGet(index, Math.round(amount * 100));
+    }
+
+    long count(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - epochs.length() + 1;
+        long total = 0;
+        for (int i = 0; i < epochs.length(); i++) {
+            if (epochs.get(i) >= oldest) {
+                total += counts.get(i);
+            }
+        }
+        return total;
+    }
+
+    double amount(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - epochs.length() + 1;
+        long total = 0;
+        for (int i = 0; i < epochs.length(); i++) {
+            if (epochs.get(i) >= oldest) {
+                total += cents.get(i);
+            }
+        }
+        return total / 100.0;
+    }
+}
@@ -0,0 +1,33 @@
+package ma.emsi.fraud.service;
+
+import java.util.Locale;
+
+/**
+ * Comportement d'un abonné SSE dont la file est pleine
+ */
+public enum StreamPolicy {
+
+    /**
+     * Jette l'événement le plus ancien de la file
+     */
+    DROP_OLDEST,
+
+    /**
+     * Ne garde que le dernier événement non envoyé
+     */
+    LATEST,
+
+    /**
+     * Regroupe le surplus dans un événement "summary" (compte, HIGH, score max)
+     */
+    CONFLATE;
+
+    /**
+     * Accepte "drop-oldest", "latest", "CONFLATE"...
+     *
+     * @throws IllegalArgumentException si la valeur est inconnue
+     */
+    public static StreamPolicy parse(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,141 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.Counter;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import ma.emsi.fraud.model.StreamSummary;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Un client /records/stream : filtre serveur et file bornée propre, vidée au
+ * rythme de la demande (request(n)) du client. Un événement refusé par le
+ * filtre n'est ni mis en file ni sérialisé. Les émetteurs ne font qu'un offer() en
+ * O(1) ; l'envoi se fait sur le scheduler de drain, jamais sur le thread Kafka.
+ */
+class StreamSubscriber {
+
+    private final long id;
+    private final StreamPolicy policy;
+    private final FraudCheckFilter filter;
+    private final int capacity;
+    private final FluxSink<ServerSentEvent<?>> sink;
+    private final Scheduler drainScheduler;
+    private final Counter droppedCounter;
+
+    // Protégés par this
+    private final ArrayDeque<ServerSentEvent<?>> pending = new ArrayDeque<>();
+    private StreamSummary conflated;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    StreamSubscriber(long id, StreamPolicy policy, FraudCheckFilter filter, int capacity,
+            FluxSink<ServerSentEvent<?>> sink, Scheduler drainScheduler, Counter droppedCounter) {
+        this.id = id;
+        this.policy = policy;
+        this.filter = filter;
+        this.capacity = policy == StreamPolicy.LATEST ? 1 : capacity;
+        this.sink = sink;
+        this.drainScheduler = drainScheduler;
+        this.droppedCounter = droppedCounter;
+    }
+
+    long id() {
+        return id;
+    }
+
+    StreamPolicy policy() {
+        return policy;
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    boolean accepts(FraudCheck check) {
+        return filter.matches(check);
+    }
+
+    /**
+     * Met en file la reprise Last-Event-ID avant tout événement live, hors
+     * capacité : sa taille est déjà bornée par l'anneau de replay
+     */
+    synchronized void replay(ServerSentEvent<?> notice, List<ReplayRing.Entry> entries) {
+        if (notice != null) {
+            pending.offer(notice);
+        }
+        entries.forEach(entry -> pending.offer(event(entry.eventId(), entry.check())));
+    }
+
+    /**
+     * Ajoute un événement à la file du client selon sa politique, sans bloquer
+     */
+    void offer(long eventId, FraudCheck check) {
+        if (!filter.matches(check)) {
+            return;
+        }
+        synchronized (this) {
+            if (policy == StreamPolicy.CONFLATE && (conflated != null || pending.size() >= capacity)) {
+                // File pleine : l'événement est absorbé dans le résumé en attente
+                conflated = conflated == null ? StreamSummary.of(eventId, check) : conflated.plus(eventId, check);
+                drop();
+            } else {
+                if (pending.size() >= capacity) {
+                    pending.poll();
+                    drop();
+                }
+                pending.offer(event(eventId, check));
+            }
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Appelé sur request(n) du client
+     */
+    void scheduleDrain() {
+        if (wip.getAndIncrement() == 0) {
+            drainScheduler.schedule(this::drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            while (!sink.isCancelled() && sink.requestedFromDownstream() > 0) {
+                ServerSentEvent<?> next = poll();
+                if (next == null) {
+                    break;
+                }
+                sink.next(next);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized ServerSentEvent<?> poll() {
+        ServerSentEvent<?> next = pending.poll();
+        if (next == null && conflated != null) {
+            next = ServerSentEvent.builder(conflated).event("summary")
+                    .id(Long.toString(conflated.lastEventId())).build();
+            conflated = null;
+        }
+        return next;
+    }
+
+    private static ServerSentEvent<FraudCheck> event(long eventId, FraudCheck check) {
+        return ServerSentEvent.builder(check).id(Long.toString(eventId)).build();
+    }
+
+    private void drop() {
+        dropped.incrementAndGet();
+        droppedCounter.increment();
+    }
+}
@@ -0,0 +1,259 @@
+package ma.emsi.fraud.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudRequest;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Features de vélocité par entité (IP, email, compte) : nombre et montant des
+ * transactions sur 1 min, 10 min et 1 h, en {@link SlidingCounter} sans verrou.
+ * Mis à jour à chaque /fraud/check et lu en O(1) pendant la décision.
+ * Les entités inactives depuis plus d'une heure (fenêtres vides) sont évincées
+ * par Caffeine. Au démarrage, peut rejouer la dernière heure du topic
+ * fraud-checks pour ne pas repartir de zéro après un redéploiement.
+ * En mode cluster, chaque transaction comptée ici est aussi diffusée aux
+ * autres instances ({@link #replicateTo}) et celles des autres instances sont
+ * ajoutées par {@link #recordRemote} : une rafale répartie par le load
+ * balancer est vue en entier par chaque instance.
+ */
+@Component
+@Order(0)
+@Slf4j
+public class VelocityFeatureStore implements ApplicationRunner {
+
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final Cache<String, EntityCounters> byIp;
+    private final Cache<String, EntityCounters> byEmail;
+    private final Cache<String, EntityCounters> byAccount;
+    private final ObjectProvider<ConsumerFactory<Object, Object>> consumerFactory;
+    private final boolean rebuild;
+    private final Duration rebuildTimeout;
+    // Identifie les événements de ce processus, déjà comptés localement
+    private final String origin = UUID.randomUUID().toString();
+    private volatile java.util.function.Consumer<VelocityEvent> replica;
+
+    public VelocityFeatureStore(MeterRegistry meterRegistry,
+            ObjectProvider<ConsumerFactory<Object, Object>> consumerFactory,
+            @Value("${fraud.velocity.idle-ttl:1h}") Duration idleTtl,
+            @Value("${fraud.velocity.max-entities:200000}") long maxEntities,
+            @Value("${fraud.velocity.rebuild:false}") boolean rebuild,
+            @Value("${fraud.velocity.rebuild-timeout:10s}") Duration rebuildTimeout) {
+        this.consumerFactory = consumerFactory;
+        this.rebuild = rebuild;
+        this.rebuildTimeout = rebuildTimeout;
+        this.byIp = CaffeineCacheMetrics.monitor(meterRegistry, build(idleTtl, maxEntities), "velocity.ip");
+        this.byEmail = CaffeineCacheMetrics.monitor(meterRegistry, build(idleTtl, maxEntities), "velocity.email");
+        this.byAccount = CaffeineCacheMetrics.monitor(meterRegistry, build(idleTtl, maxEntities),
+                "velocity.account");
+    }
+
+    private static Cache<String, EntityCounters> build(Duration idleTtl, long maxEntities) {
+        return Caffeine.newBuilder()
+                .expireAfterAccess(idleTtl)
+                .maximumSize(maxEntities)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Compte la transaction pour ses entités et retourne leurs features, elle comprise
+     */
+    public VelocitySnapshot record(FraudRequest request) {
+        long now = System.currentTimeMillis();
+        double amount = amount(request.amount());
+        VelocitySnapshot snapshot = record(request.ip(), request.email(), request.accountId(), amount, now);
+        java.util.function.Consumer<VelocityEvent> sink = replica;
+        if (sink != null) {
+            sink.accept(new VelocityEvent(origin, request.ip(), request.email(), request.accountId(), amount, now));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Destination des transactions comptées localement (mode cluster)
+     */
+    public void replicateTo(java.util.function.Consumer<VelocityEvent> sink) {
+        this.replica = sink;
+    }
+
+    /**
+     * Transaction comptée par une autre instance ; les événements de ce
+     * processus, déjà comptés par {@link #record(FraudRequest)}, sont ignorés
+     */
+    public void recordRemote(VelocityEvent event) {
+        if (!origin.equals(event.origin())) {
+            record(event.ip(), event.email(), event.accountId(), event.amount(), event.at());
+        }
+    }
+
+    VelocitySnapshot record(String ip, String email, String accountId, double amount, long nowMillis) {
+        return new VelocitySnapshot(
+                add(byIp, normalizeIp(ip), amount, nowMillis),
+                add(byEmail, normalizeEmail(email), amount, nowMillis),
+                add(byAccount, accountId, amount, nowMillis));
+    }
+
+    /**
+     * Features actuelles sans compter de transaction
+     */
+    public VelocitySnapshot lookup(String ip, String email, String accountId) {
+        long now = System.currentTimeMillis();
+        return new VelocitySnapshot(
+                read(byIp, normalizeIp(ip), now),
+                read(byEmail, normalizeEmail(email), now),
+                read(byAccount, accountId, now));
+    }
+
+    private static EntityVelocity add(Cache<String, EntityCounters> cache, String key, double amount, long now) {
+        if (key == null || key.isEmpty()) {
+            return EntityVelocity.EMPTY;
+        }
+        EntityCounters counters = cache.get(key, k -> new EntityCounters());
+        counters.add(now, amount);
+        return counters.snapshot(now);
+    }
+
+    private static EntityVelocity read(Cache<String, EntityCounters> cache, String key, long now) {
+        EntityCounters counters = key == null ? null : cache.getIfPresent(key);
+        return counters != null ? counters.snapshot(now) : EntityVelocity.EMPTY;
+    }
+
+    private static String normalizeIp(String ip) {
+        return ip != null ? ip.trim() : null;
+    }
+
+    private static String normalizeEmail(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static double amount(Double amount) {
+        return amount != null ? amount : 0.0;
+    }
+
+    /**
+     * Rejoue la dernière heure de fraud-checks (si fraud.velocity.rebuild=true),
+     * avant que l'application ne se déclare prête
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        ConsumerFactory<Object, Object> factory = consumerFactory.getIfAvailable();
+        if (!rebuild || factory == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        try (Consumer<Object, Object> consumer = factory.createConsumer("fraud-velocity-rebuild", "velocity-rebuild",
+                null, overrides)) {
+            long replayed = replay(consumer, start - HOUR_MILLIS, start + rebuildTimeout.toMillis());
+            log.info("✅ Velocity features rebuilt from {} audits in {} ms", replayed,
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Velocity rebuild from {} failed, starting empty: {}", AuditPublisher.TOPIC, e.getMessage());
+        }
+    }
+
+    private long replay(Consumer<Object, Object> consumer, long sinceMillis, long deadline) {
+        List<PartitionInfo> partitions = consumer.partitionsFor(AuditPublisher.TOPIC, rebuildTimeout);
+        Map<TopicPartition, Long> since = new HashMap<>();
+        partitions.forEach(p -> since.put(new TopicPartition(p.topic(), p.partition()), sinceMillis));
+        consumer.assign(since.keySet());
+
+        // Position de départ : premier audit de la dernière heure ; fin : offsets au démarrage
+        Map<TopicPartition, Long> end = consumer.endOffsets(since.keySet(), rebuildTimeout);
+        Map<TopicPartition, OffsetAndTimestamp> startOffsets = consumer.offsetsForTimes(since, rebuildTimeout);
+        startOffsets.forEach((partition, offset) -> consumer.seek(partition,
+                offset != null ? offset.offset() : end.get(partition)));
+
+        long replayed = 0;
+        while (System.currentTimeMillis() < deadline && !caughtUp(consumer, end)) {
+            for (ConsumerRecord<Object, Object> record : consumer.poll(Duration.ofMillis(500))) {
+                if (record.value() instanceof FraudCheck check && check.getCreatedAt() != null) {
+                    long time = check.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    record(check.getIpAddress(), check.getEmail(), check.getAccountId(), amount(check.getAmount()),
+                            time);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    private static boolean caughtUp(Consumer<Object, Object> consumer, Map<TopicPartition, Long> end) {
+        for (Map.Entry<TopicPartition, Long> entry : end.entrySet()) {
+            if (consumer.position(entry.getKey()) < entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fenêtres d'une entité : granularité 10 s, 1 min et 10 min
+     */
+    private static final class EntityCounters {
+        private final SlidingCounter minute = new SlidingCounter(6, 10_000);
+        private final SlidingCounter tenMinutes = new SlidingCounter(10, 60_000);
+        private final SlidingCounter hour = new SlidingCounter(6, 600_000);
+
+        void add(long now, double amount) {
+            minute.add(now, amount);
+            tenMinutes.add(now, amount);
+            hour.add(now, amount);
+        }
+
+        EntityVelocity snapshot(long now) {
+            return new EntityVelocity(minute.count(now), minute.amount(now), tenMinutes.count(now),
+                    tenMinutes.amount(now), hour.count(now), hour.amount(now));
+        }
+    }
+
+    public record EntityVelocity(long count1m, double amount1m, long count10m, double amount10m, long count1h,
+            double amount1h) {
+
+        public static final EntityVelocity EMPTY = new EntityVelocity(0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Transaction comptée par une instance, diffusée aux autres
+     */
+    public record VelocityEvent(String origin, String ip, String email, String accountId, double amount, long at) {
+    }
+
+    public record VelocitySnapshot(EntityVelocity ip, EntityVelocity email, EntityVelocity account) {
+
+        /**
+         * Plus forte rafale sur une minute, toutes entités confondues
+         */
+        public long maxCount1m() {
+            return Math.max(ip.count1m(), Math.max(email.count1m(), account.count1m()));
+        }
+    }
+}
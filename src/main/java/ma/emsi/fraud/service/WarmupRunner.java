@@ -0,0 +1,165 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase de warm-up au démarrage, avant que l'application se déclare prête.
+ * Spring Boot ne publie ReadinessState.ACCEPTING_TRAFFIC qu'après l'exécution
+ * des ApplicationRunner : tant que ce runner tourne, /actuator/health/readiness
+ * reste OUT_OF_SERVICE et le load balancer n'envoie pas de trafic.
+ * - modèle : rondes de requêtes synthétiques via {@link MlService#score},
+ *   jusqu'à ce que le p99 d'une ronde à l'autre varie de moins de la tolérance
+ * - Kafka : métadonnées du topic d'audit (connexion broker du producteur)
+ * - base : quelques lectures concurrentes (pool Hikari, requêtes Hibernate)
+ * Borné par max-duration : un warm-up qui ne converge pas ne bloque pas le déploiement.
+ */
+@Component
+@Slf4j
+public class WarmupRunner implements ApplicationRunner {
+
+    private final MlService mlService;
+    private final KafkaTemplate<String, FraudCheck> kafkaTemplate;
+    private final FraudCheckQueryService queryService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int roundSize;
+    private final int minRounds;
+    private final int maxRounds;
+    private final double tolerance;
+    private final Duration maxDuration;
+    private final int repositoryQueries;
+
+    public WarmupRunner(MlService mlService, KafkaTemplate<String, FraudCheck> kafkaTemplate,
+            FraudCheckQueryService queryService, MeterRegistry meterRegistry,
+            @Value("${fraud.warmup.enabled:true}") boolean enabled,
+            @Value("${fraud.warmup.round-size:512}") int roundSize,
+            @Value("${fraud.warmup.min-rounds:3}") int minRounds,
+            @Value("${fraud.warmup.max-rounds:30}") int maxRounds,
+            @Value("${fraud.warmup.stable-tolerance:0.15}") double tolerance,
+            @Value("${fraud.warmup.max-duration:60s}") Duration maxDuration,
+            @Value("${fraud.warmup.repository-queries:20}") int repositoryQueries) {
+        this.mlService = mlService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.queryService = queryService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.roundSize = roundSize;
+        this.minRounds = Math.max(2, minRounds);
+        this.maxRounds = Math.max(this.minRounds, maxRounds);
+        this.tolerance = tolerance;
+        this.maxDuration = maxDuration;
+        this.repositoryQueries = repositoryQueries;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            log.info("Warm-up disabled (fraud.warmup.enabled=false)");
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+        log.info("🔥 Warm-up started (round size={}, rounds={}..{}, tolerance={}, max {})",
+                roundSize, minRounds, maxRounds, tolerance, maxDuration);
+
+        stage("kafka", this::warmKafka);
+        stage("repository", this::warmRepository);
+        stage("model", () -> warmModel(deadline));
+
+        log.info("✅ Warm-up finished in {} ms, application is now accepting traffic",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void stage(String name, Runnable stage) {
+        long start = System.nanoTime();
+        try {
+            stage.run();
+        } catch (Exception e) {
+            // Dépendance indisponible : le service démarre quand même (outbox, fallback...)
+            log.warn("Warm-up stage {} failed: {}", name, e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("fraud.warmup.duration")
+                    .description("Durée des étapes du warm-up de démarrage")
+                    .tag("stage", name)
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Warm-up stage {} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+    }
+
+    private void warmKafka() {
+        // Crée le producteur, ouvre la connexion et charge les métadonnées sans publier d'audit factice
+        int partitions = kafkaTemplate.partitionsFor(AuditPublisher.TOPIC).size();
+        log.info("Kafka producer ready ({} partitions on {})", partitions, AuditPublisher.TOPIC);
+    }
+
+    private void warmRepository() {
+        Flux.range(0, repositoryQueries)
+                .flatMap(i -> queryService.search(FraudCheckFilter.NONE, null, 1))
+                .blockLast(maxDuration);
+    }
+
+    /**
+     * Rondes successives jusqu'à stabilisation du p99 (au moins minRounds)
+     */
+    private void warmModel(long deadline) {
+        // Contrôle de cohérence : paiement ordinaire vs virement qui vide le compte
+        log.info("Reference scores: payment={}, drained transfer={}",
+                mlService.predict(0, 9000.0, 10000.0, 1000.0, 0.0, 0.0),
+                mlService.predict(1, 1000000.0, 1000000.0, 0.0, 0.0, 0.0));
+
+        long previousP99 = -1;
+        for (int round = 1; round <= maxRounds; round++) {
+            long[] latencies = runRound(round);
+            Arrays.sort(latencies);
+            long p50 = latencies[latencies.length / 2];
+            long p99 = latencies[(int) Math.ceil(latencies.length * 0.99) - 1];
+            log.info("Warm-up round {}: p50={} µs, p99={} µs", round,
+                    TimeUnit.NANOSECONDS.toMicros(p50), TimeUnit.NANOSECONDS.toMicros(p99));
+
+            if (round >= minRounds && previousP99 > 0 && isStable(previousP99, p99, tolerance)) {
+                log.info("Model latency stabilized after {} rounds", round);
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                log.warn("Model latency not stable after {} rounds, giving up (max-duration {})", round,
+                        maxDuration);
+                return;
+            }
+            previousP99 = p99;
+        }
+        log.warn("Model latency not stable after {} rounds", maxRounds);
+    }
+
+    private long[] runRound(int round) {
+        long[] latencies = new long[roundSize];
+        // Toute la ronde est soumise d'un coup : le batcher forme des lots pleins comme en charge
+        Flux.range(0, roundSize)
+                .flatMap(i -> {
+                    long submitted = System.nanoTime();
+                    return mlService.score(ModelVersion.syntheticRequest(round * roundSize + i))
+                            .doOnNext(score -> latencies[i] = System.nanoTime() - submitted);
+                }, roundSize)
+                .blockLast(maxDuration);
+        return latencies;
+    }
+
+    static boolean isStable(long previous, long current, double tolerance) {
+        return Math.abs(current - previous) <= tolerance * previous;
+    }
+}
@@ -0,0 +1,74 @@
+package ma.emsi.fraud.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Client HTTP réel des services d'enrichissement (WebClient / Reactor Netty).
+ * Les appels sont multiplexés sur les event loops Netty : 10k vérifications
+ * concurrentes n'occupent aucun thread supplémentaire.
+ *
+ * Contrat attendu :
+ * GET {ip.base-url}/v1/ip/{ip} -> {"proxy": true|false}
+ * GET {email.base-url}/v1/email/{email} -> {"leaked": true|false}
+ */
+@Component
+@ConditionalOnProperty(name = "fraud.enrichment.client", havingValue = "http")
+@Slf4j
+public class WebClientEnrichmentClient implements EnrichmentClient {
+
+    private final WebClient ipClient;
+    private final WebClient emailClient;
+
+    public WebClientEnrichmentClient(WebClient.Builder builder,
+            @Value("${fraud.enrichment.ip.base-url}") String ipBaseUrl,
+            @Value("${fraud.enrichment.email.base-url}") String emailBaseUrl,
+            @Value("${fraud.enrichment.http.max-connections:1000}") int maxConnections,
+            @Value("${fraud.enrichment.http.pending-acquire-max:20000}") int pendingAcquireMax,
+            @Value("${fraud.enrichment.http.response-timeout:2s}") Duration responseTimeout) {
+        ConnectionProvider provider = ConnectionProvider.builder("enrichment")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .build();
+        HttpClient httpClient = HttpClient.create(provider).responseTimeout(responseTimeout);
+        WebClient.Builder base = builder.clone().clientConnector(new ReactorClientHttpConnector(httpClient));
+
+        this.ipClient = base.clone().baseUrl(ipBaseUrl).build();
+        this.emailClient = base.clone().baseUrl(emailBaseUrl).build();
+    }
+
+    @Override
+    public Mono<Boolean> isProxy(String ip) {
+        return ipClient.get()
+                .uri("/v1/ip/{ip}", ip)
+                .retrieve()
+                .bodyToMono(IpReputation.class)
+                .map(IpReputation::proxy)
+                .doOnNext(isProxy -> log.debug("IP Check completed: isProxy={}", isProxy));
+    }
+
+    @Override
+    public Mono<Boolean> isEmailLeaked(String email) {
+        return emailClient.get()
+                .uri("/v1/email/{email}", email)
+                .retrieve()
+                .bodyToMono(EmailExposure.class)
+                .map(EmailExposure::leaked)
+                .doOnNext(isLeaked -> log.debug("Email Check completed: isLeaked={}", isLeaked));
+    }
+
+    record IpReputation(boolean proxy) {
+    }
+
+    record EmailExposure(boolean leaked) {
+    }
+}
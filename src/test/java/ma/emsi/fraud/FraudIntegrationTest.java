@@ -1,7 +1,7 @@
 package ma.emsi.fraud;
 
-import ma.emsi.fraud.model.FraudCheck;
 import ma.emsi.fraud.model.FraudRequest;
+import ma.emsi.fraud.repository.FraudCheckBatchWriter;
 import ma.emsi.fraud.repository.FraudCheckRepository;
 import ma.emsi.fraud.service.EnrichmentService;
 import ma.emsi.fraud.service.MlService;
@@ -9,13 +9,15 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.test.context.EmbeddedKafka;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyDouble;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,8 +39,14 @@ class FraudIntegrationTest {
     @MockBean
     private FraudCheckRepository repository;
 
+    @SpyBean
+    private FraudCheckBatchWriter batchWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
-    void testFullFraudCheckFlow() {
+    void testFullFraudCheckFlow() throws InterruptedException {
         // Arrange
         FraudRequest request = new FraudRequest(
                 500.0, // amount
@@ -56,15 +64,8 @@ class FraudIntegrationTest {
                         .just(new ma.emsi.fraud.service.EnrichmentService.EnrichmentResult(false, false)));
 
         // Mock ML Service to return High Risk score
-        when(mlService.predict(anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                .thenReturn(0.85f);
-
-        // Mock Repository to simulate save
-        when(repository.save(any(FraudCheck.class))).thenAnswer(i -> {
-            FraudCheck fc = (FraudCheck) i.getArguments()[0];
-            fc.setId(1L);
-            return fc;
-        });
+        when(mlService.score(any(FraudRequest.class)))
+                .thenReturn(reactor.core.publisher.Mono.just(0.85f));
 
         // Act: Call API
         webTestClient.post().uri("/api/v1/fraud/check")
@@ -77,6 +78,16 @@ class FraudIntegrationTest {
 
         // Assert: Verify Async processing (Kafka -> Consumer -> DB)
         // This confirms the message went through Kafka and reached the consumer
-        verify(repository, timeout(10000).times(1)).save(any(FraudCheck.class));
+        verify(batchWriter, timeout(10000).times(1)).insertAll(anyList());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (countRows() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(countRows()).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT risk FROM fraud_checks", String.class)).isEqualTo("HIGH");
+    }
+
+    private long countRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fraud_checks", Long.class);
     }
 }
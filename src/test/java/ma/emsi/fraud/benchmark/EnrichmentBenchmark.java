@@ -0,0 +1,96 @@
+package ma.emsi.fraud.benchmark;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.service.EnrichmentCache;
+import ma.emsi.fraud.service.EnrichmentClient;
+import ma.emsi.fraud.service.EnrichmentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût propre de la composition EnrichmentService (Mono.zip, timeouts, cache
+ * Caffeine single-flight) avec un client qui répond immédiatement : ce qui
+ * reste à payer quand le fournisseur externe est instantané.
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=EnrichmentBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnrichmentBenchmark {
+
+    private EnrichmentService cached;
+    private EnrichmentService uncached;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EnrichmentClient instant = new EnrichmentClient() {
+            @Override
+            public Mono<Boolean> isProxy(String ip) {
+                return Mono.just(ip.startsWith("10."));
+            }
+
+            @Override
+            public Mono<Boolean> isEmailLeaked(String email) {
+                return Mono.just(email.endsWith("@darkweb.net"));
+            }
+        };
+        cached = service(instant, 100_000);
+        // Taille 0 : chaque appel est un miss (chargement + éviction)
+        uncached = service(instant, 0);
+    }
+
+    private static EnrichmentService service(EnrichmentClient client, long maxSize) {
+        EnrichmentCache cache = new EnrichmentCache(new SimpleMeterRegistry(), Duration.ofMinutes(10),
+                Duration.ofHours(1), Duration.ofSeconds(30), maxSize);
+        EnrichmentService service = new EnrichmentService(client, cache, new SimpleMeterRegistry(),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+        ReflectionTestUtils.setField(service, "ipTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(service, "emailTimeout", Duration.ofSeconds(1));
+        return service;
+    }
+
+    /**
+     * Client récurrent : les deux lookups sont servis par le cache
+     */
+    @Benchmark
+    public EnrichmentService.EnrichmentResult cacheHit() {
+        return cached.enrich("192.168.1.45", "customer@example.com").block();
+    }
+
+    /**
+     * Nouveau client à chaque appel : deux chargements via le client
+     */
+    @Benchmark
+    public EnrichmentService.EnrichmentResult cacheMiss() {
+        long n = sequence++;
+        return uncached.enrich("10.0." + (n >> 8 & 255) + "." + (n & 255), "user" + n + "@example.com").block();
+    }
+
+    /**
+     * Requête sans IP ni email : seul le Mono.zip est payé
+     */
+    @Benchmark
+    public EnrichmentService.EnrichmentResult noLookup() {
+        return cached.enrich(null, null).block();
+    }
+}
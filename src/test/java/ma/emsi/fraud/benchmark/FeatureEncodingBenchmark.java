@@ -0,0 +1,99 @@
+package ma.emsi.fraud.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudRequest;
+import ma.emsi.fraud.service.FeatureEncoder;
+import ma.emsi.fraud.service.MlService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.FloatBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du chemin FraudRequest -> tenseur.
+ * Lancer avec le profiler GC pour lire gc.alloc.rate.norm (octets par opération) :
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=FeatureEncodingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureEncodingBenchmark {
+
+    private static final int BATCH = 64;
+
+    private final FraudRequest[] requests = new FraudRequest[BATCH];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < BATCH; i++) {
+            requests[i] = new FraudRequest(1000.0 * i, 5000.0, 5000.0 - i, i % 5, 0.0, 1000.0 * i,
+                    "10.0.0." + i, "user" + i + "@example.com");
+        }
+    }
+
+    /**
+     * MlService chargé une fois avec le vrai modèle ONNX
+     */
+    @State(Scope.Benchmark)
+    public static class Model {
+        MlService mlService;
+
+        @Setup(Level.Trial)
+        public void load() throws Exception {
+            mlService = new MlService(new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(mlService, "modelPath", "src/main/resources/fraud_model.onnx");
+            ReflectionTestUtils.setField(mlService, "maxBatchSize", BATCH);
+            ReflectionTestUtils.setField(mlService, "maxBatchWait", Duration.ofMillis(2));
+            ReflectionTestUtils.setField(mlService, "batchQueueCapacity", 1024);
+            ReflectionTestUtils.setField(mlService, "poolSize", 1);
+            ReflectionTestUtils.setField(mlService, "intraOpThreads", 1);
+            mlService.loadModel();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            mlService.cleanup();
+        }
+    }
+
+    /**
+     * Encodage d'un lot complet dans le buffer direct du thread : 0 B/op attendu
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void encodeBatch(Blackhole blackhole) {
+        FloatBuffer buffer = FeatureEncoder.buffer(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            FeatureEncoder.encode(requests[i], buffer, i);
+        }
+        blackhole.consume(buffer);
+    }
+
+    /**
+     * Prédiction synchrone d'une ligne (encodage + passe ONNX + décodage)
+     */
+    @Benchmark
+    public float predictSingle(Model model) {
+        FraudRequest request = requests[7];
+        return model.mlService.predict(request.type(), request.amount(), request.oldBalance(), request.newBalance(),
+                request.oldBalanceDest(), request.newBalanceDest());
+    }
+}
@@ -0,0 +1,102 @@
+package ma.emsi.fraud.benchmark;
+
+import ma.emsi.fraud.kafka.FraudCheckDeserializer;
+import ma.emsi.fraud.kafka.FraudCheckSerializer;
+import ma.emsi.fraud.model.FraudCheck;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation d'un FraudCheck sur le topic fraud-checks : JSON avec en-têtes
+ * de type (ancien chemin) contre FraudCheckCodec. Les tailles sont affichées au setup.
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=FraudCheckSerializationBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FraudCheckSerializationBenchmark {
+
+    private static final String TOPIC = "fraud-checks";
+
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+    private final FraudCheckSerializer binarySerializer = new FraudCheckSerializer();
+    private final FraudCheckDeserializer binaryDeserializer = new FraudCheckDeserializer();
+
+    private FraudCheck check;
+    private RecordHeaders jsonHeaders;
+    private byte[] jsonBytes;
+    private byte[] binaryBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jsonDeserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "*"), false);
+        binaryDeserializer.configure(Map.of(), false);
+        binarySerializer.configure(Map.of(), false);
+
+        check = new FraudCheck();
+        check.setId(12345L);
+        check.setAmount(181000.0);
+        check.setScore(0.9731f);
+        check.setRisk("HIGH");
+        check.setTransactionType(1);
+        check.setOldBalance(181000.0);
+        check.setNewBalance(0.0);
+        check.setOldBalanceDest(0.0);
+        check.setNewBalanceDest(21182.0);
+        check.setIpAddress("192.168.1.45");
+        check.setEmail("customer.name@example.com");
+        check.setAccountId("C1231006815");
+        check.setCreatedAt(LocalDateTime.of(2026, 3, 14, 9, 26, 53));
+
+        jsonHeaders = new RecordHeaders();
+        jsonBytes = jsonSerializer.serialize(TOPIC, jsonHeaders, check);
+        binaryBytes = binarySerializer.serialize(TOPIC, new RecordHeaders(), check);
+        int headerBytes = 0;
+        for (var header : jsonHeaders) {
+            headerBytes += header.key().length() + header.value().length;
+        }
+        System.out.printf("%nJSON: %d bytes value + %d bytes type headers, binary: %d bytes%n",
+                jsonBytes.length, headerBytes, binaryBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return jsonSerializer.serialize(TOPIC, new RecordHeaders(), check);
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return binarySerializer.serialize(TOPIC, new RecordHeaders(), check);
+    }
+
+    @Benchmark
+    public Object jsonDeserialize() {
+        // Le JsonDeserializer retire les en-têtes de type lus : copie à chaque appel
+        return jsonDeserializer.deserialize(TOPIC, new RecordHeaders(jsonHeaders.toArray()), jsonBytes);
+    }
+
+    @Benchmark
+    public Object binaryDeserialize() {
+        return binaryDeserializer.deserialize(TOPIC, new RecordHeaders(), binaryBytes);
+    }
+}
@@ -0,0 +1,220 @@
+package ma.emsi.fraud.benchmark;
+
+import ma.emsi.fraud.FraudDetectionApplication;
+import ma.emsi.fraud.service.AuditPublisher;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rejoue un trafic NDJSON (une FraudRequest par ligne, format requests.jsonl)
+ * sur POST /api/v1/fraud/check à concurrence fixe, puis affiche le débit et
+ * l'histogramme HdrHistogram des latences (ms).
+ * Sans --url, démarre l'application avec Kafka embarqué (KRaft) et H2.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=ma.emsi.fraud.benchmark.LoadDriver \
+ *     -Dbenchmark.includes= "-Dbenchmark.args=--count=20000 --concurrency=64 --max-p99-ms=50"
+ * </pre>
+ * Options : --url, --requests (fichier NDJSON, sinon 80% paiements / 20% comptes
+ * vidés générés), --count, --concurrency, --warmup (requêtes non mesurées),
+ * --hgrm (journal HdrHistogram pour comparer deux versions), --max-p99-ms
+ * (code retour 1 si dépassé : régression).
+ */
+public final class LoadDriver {
+
+    private static final String CHECK_PATH = "/api/v1/fraud/check";
+
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int count = Integer.parseInt(options.getOrDefault("count", "20000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2000"));
+        List<byte[]> traffic = options.containsKey("requests")
+                ? load(Path.of(options.get("requests")))
+                : generate(count, Long.parseLong(options.getOrDefault("seed", "42")));
+
+        EmbeddedKafkaKraftBroker broker = null;
+        ConfigurableApplicationContext app = null;
+        String url = options.get("url");
+        try {
+            if (url == null) {
+                // Publie spring.embedded.kafka.brokers, lu par application.properties de test
+                broker = new EmbeddedKafkaKraftBroker(1, 1, AuditPublisher.TOPIC);
+                broker.afterPropertiesSet();
+                app = new SpringApplicationBuilder(FraudDetectionApplication.class).run(
+                        "--server.port=0",
+                        "--logging.level.ma.emsi.fraud=INFO",
+                        "--fraud.model.path=src/main/resources/fraud_model.onnx",
+                        "--fraud.warmup.enabled=true",
+                        "--fraud.audit.outbox.dir=target/load-outbox");
+                url = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+
+            WebClient client = WebClient.builder()
+                    .baseUrl(url)
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(
+                            ConnectionProvider.builder("load-driver").maxConnections(concurrency).build())))
+                    .build();
+
+            System.out.printf("%nLoad driver: %s, %d requests (+%d warm-up), concurrency %d%n",
+                    url + CHECK_PATH, count, warmup, concurrency);
+            run(client, traffic, warmup, concurrency, null);
+
+            Histogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+            AtomicLong errors = new AtomicLong();
+            long start = System.nanoTime();
+            run(client, traffic, count, concurrency, new Recording(histogram, errors));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            report(System.out, histogram, count, errors.get(), seconds);
+            if (options.containsKey("hgrm")) {
+                try (PrintStream out = new PrintStream(Files.newOutputStream(Path.of(options.get("hgrm"))))) {
+                    new HistogramLogWriter(out).outputIntervalHistogram(histogram);
+                }
+            }
+            if (options.containsKey("max-p99-ms")) {
+                double p99 = histogram.getValueAtPercentile(99.0) / 1000.0;
+                double limit = Double.parseDouble(options.get("max-p99-ms"));
+                if (p99 > limit) {
+                    System.out.printf("❌ p99 %.2f ms exceeds the %.2f ms budget%n", p99, limit);
+                    System.exit(1);
+                }
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (broker != null) {
+                broker.destroy();
+            }
+        }
+    }
+
+    private record Recording(Histogram histogram, AtomicLong errors) {
+    }
+
+    /**
+     * Boucle fermée : au plus {@code concurrency} requêtes en vol, trafic rejoué en boucle
+     */
+    private static void run(WebClient client, List<byte[]> traffic, int count, int concurrency,
+            Recording recording) {
+        Flux.range(0, count)
+                .flatMap(i -> {
+                    long sent = System.nanoTime();
+                    return client.post()
+                            .uri(CHECK_PATH)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(traffic.get(i % traffic.size()))
+                            .retrieve()
+                            .bodyToMono(String.class)
+                            .map(body -> !body.contains("\"ERROR\""))
+                            .onErrorResume(e -> Mono.just(false))
+                            .doOnNext(ok -> {
+                                if (recording == null) {
+                                    return;
+                                }
+                                recording.histogram().recordValue(
+                                        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent));
+                                if (!ok) {
+                                    recording.errors().incrementAndGet();
+                                }
+                            });
+                }, concurrency)
+                .blockLast();
+    }
+
+    private static void report(PrintStream out, Histogram histogram, int count, long errors, double seconds) {
+        out.printf(Locale.ROOT, "%nRequests: %d in %.2f s -> %.0f req/s, errors: %d%n",
+                count, seconds, count / seconds, errors);
+        out.printf(Locale.ROOT, "Latency (ms): p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n%n",
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+        histogram.outputPercentileDistribution(out, 5, 1000.0);
+    }
+
+    private static List<byte[]> load(Path file) throws IOException {
+        List<byte[]> traffic = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (!line.isBlank()) {
+                traffic.add(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (traffic.isEmpty()) {
+            throw new IllegalArgumentException("No request in " + file);
+        }
+        return traffic;
+    }
+
+    /**
+     * Même mélange que unused_files/load_test.py : 80% paiements, 20% virements qui vident le compte
+     */
+    static List<byte[]> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> traffic = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String json;
+            if (random.nextInt(5) > 0) {
+                double amount = round(10.0 + random.nextDouble() * 490.0);
+                double oldBalance = round(amount + 100.0 + random.nextDouble() * 1900.0);
+                json = String.format(Locale.ROOT, "{\"amount\":%.2f,\"type\":0,\"oldBalance\":%.2f,"
+                        + "\"newBalance\":%.2f,\"oldBalanceDest\":0.0,\"newBalanceDest\":0.0,"
+                        + "\"ip\":\"192.168.1.%d\",\"email\":\"user%d@gmail.com\",\"accountId\":\"C%d\"}",
+                        amount, oldBalance, round(oldBalance - amount), 2 + random.nextInt(253),
+                        1000 + random.nextInt(9000), random.nextInt(100_000));
+            } else {
+                double amount = round(200_000.0 + random.nextDouble() * 800_000.0);
+                json = String.format(Locale.ROOT, "{\"amount\":%.2f,\"type\":1,\"oldBalance\":%.2f,"
+                        + "\"newBalance\":0.0,\"oldBalanceDest\":0.0,\"newBalanceDest\":%.2f,"
+                        + "\"ip\":\"10.0.0.%d\",\"email\":\"hacker%d@darkweb.net\",\"accountId\":\"C%d\"}",
+                        amount, amount, amount, 2 + random.nextInt(253), 100 + random.nextInt(900),
+                        random.nextInt(100_000));
+            }
+            traffic.add(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return traffic;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq > 0 ? arg.substring(2, eq) : arg.substring(2), eq > 0 ? arg.substring(eq + 1) : "true");
+        }
+        return options;
+    }
+}
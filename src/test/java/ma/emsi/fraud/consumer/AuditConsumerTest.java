@@ -0,0 +1,48 @@
+package ma.emsi.fraud.consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.repository.FraudCheckBatchWriter;
+import ma.emsi.fraud.service.FraudStatsService;
+import ma.emsi.fraud.service.FraudStreamService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuditConsumerTest {
+
+    private final FraudCheckBatchWriter batchWriter = mock(FraudCheckBatchWriter.class);
+
+    @SuppressWarnings("unchecked")
+    private final AuditConsumer consumer = new AuditConsumer(batchWriter, mock(FraudStreamService.class),
+            mock(FraudStatsService.class), mock(ObjectProvider.class), new SimpleMeterRegistry());
+
+    @Test
+    void consume_ShouldPersistRecordsBeforeAnInvalidOneAndPointTheErrorHandlerAtIt() {
+        FraudCheck first = check(100.0);
+        FraudCheck invalid = check(null);
+        when(batchWriter.insertAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThatThrownBy(() -> consumer.consume(List.of(first, invalid, check(300.0)), List.of(0, 0, 0), null))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                        e -> assertThat(e.getIndex()).isEqualTo(1));
+        verify(batchWriter).insertAll(List.of(first));
+    }
+
+    private static FraudCheck check(Double amount) {
+        FraudCheck check = new FraudCheck();
+        check.setAmount(amount);
+        check.setScore(0.1f);
+        check.setRisk("LOW");
+        return check;
+    }
+}
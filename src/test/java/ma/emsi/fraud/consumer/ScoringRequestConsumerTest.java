@@ -0,0 +1,89 @@
+package ma.emsi.fraud.consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.DecisionPath;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudRequest;
+import ma.emsi.fraud.model.FraudResponse;
+import ma.emsi.fraud.service.FraudDecisionService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScoringRequestConsumerTest {
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<Object, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    private final FraudDecisionService decisionService = mock(FraudDecisionService.class);
+    private final ScoringRequestConsumer consumer = new ScoringRequestConsumer(decisionService, kafkaTemplate,
+            "fraud-decisions", Duration.ofSeconds(5), new SimpleMeterRegistry());
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void score_ShouldPublishResponseAndAuditPerRequestAndSendInvalidOnesToTheDlt() {
+        FraudRequest valid = new FraudRequest(500.0, 1000.0, 500.0, 1, 0.0, 500.0, "10.0.0.1", "a@b.c", "C1");
+        FraudRequest incomplete = new FraudRequest(null, 1000.0, 500.0, 1, 0.0, 500.0, "10.0.0.1", "a@b.c", "C2");
+        when(decisionService.decideAll(List.of(valid), false, new BitSet())).thenReturn(Flux.just(
+                new FraudDecisionService.Decision(valid, 0.85f, "HIGH", DecisionPath.MODEL)));
+
+        consumer.score(List.of(
+                new ConsumerRecord<>("fraud-requests", 3, 41L, "req-41", valid),
+                new ConsumerRecord<>("fraud-requests", 3, 42L, "C2", incomplete)));
+
+        ArgumentCaptor<ProducerRecord<Object, Object>> records = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(2)).send(records.capture());
+        ProducerRecord<Object, Object> dead = records.getAllValues().get(0);
+        assertThat(dead.topic()).isEqualTo("fraud-requests.DLT");
+        assertThat(dead.key()).isEqualTo("C2");
+
+        ProducerRecord<Object, Object> response = records.getAllValues().get(1);
+        assertThat(response.topic()).isEqualTo("fraud-decisions");
+        assertThat(response.key()).isEqualTo("req-41");
+        assertThat(response.value()).isEqualTo(new FraudResponse(0.85f, "HIGH", DecisionPath.MODEL));
+        assertThat(new String(response.headers().lastHeader(KafkaHeaders.CORRELATION_ID).value(),
+                StandardCharsets.UTF_8)).isEqualTo("3-41");
+
+        ArgumentCaptor<Object> audit = ArgumentCaptor.forClass(Object.class);
+        // Audit clé par compte, pas par la clé choisie par le client
+        verify(kafkaTemplate).send(eq("fraud-checks"), eq("C1"), audit.capture());
+        assertThat(((FraudCheck) audit.getValue()).getRisk()).isEqualTo("HIGH");
+    }
+
+    @Test
+    void replayedBatch_ShouldNotCountVelocityTwice() {
+        FraudRequest first = new FraudRequest(500.0, 1000.0, 500.0, 1, 0.0, 500.0, "10.0.0.1", "a@b.c", "C1");
+        FraudRequest next = new FraudRequest(700.0, 1000.0, 300.0, 1, 0.0, 700.0, "10.0.0.1", "a@b.c", "C1");
+        when(decisionService.decideAll(eq(List.of(first)), eq(false), any())).thenReturn(Flux.just(
+                new FraudDecisionService.Decision(first, 0.1f, "HIGH", DecisionPath.MODEL)));
+        when(decisionService.decideAll(eq(List.of(first, next)), eq(false), any())).thenReturn(Flux.just(
+                new FraudDecisionService.Decision(first, 0.1f, "HIGH", DecisionPath.MODEL),
+                new FraudDecisionService.Decision(next, 0.1f, "HIGH", DecisionPath.MODEL)));
+
+        consumer.score(List.of(new ConsumerRecord<>("fraud-requests", 0, 7L, "k", first)));
+        // Transaction annulée : l'AfterRollbackProcessor rejoue l'offset 7, suivi du 8
+        consumer.score(List.of(new ConsumerRecord<>("fraud-requests", 0, 7L, "k", first),
+                new ConsumerRecord<>("fraud-requests", 0, 8L, "k", next)));
+
+        ArgumentCaptor<BitSet> counted = ArgumentCaptor.forClass(BitSet.class);
+        verify(decisionService, times(2)).decideAll(any(), eq(false), counted.capture());
+        assertThat(counted.getAllValues().get(0).isEmpty()).isTrue();
+        assertThat(counted.getAllValues().get(1)).isEqualTo(BitSet.valueOf(new long[] { 0b01 }));
+    }
+}
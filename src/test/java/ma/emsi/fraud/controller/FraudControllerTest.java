@@ -1,28 +1,54 @@
 package ma.emsi.fraud.controller;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.DecisionPath;
 import ma.emsi.fraud.model.FraudCheck;
 import ma.emsi.fraud.model.FraudRequest;
+import ma.emsi.fraud.model.FraudResponse;
+import ma.emsi.fraud.service.AdaptiveConcurrencyLimiter;
+import ma.emsi.fraud.service.AuditPublisher;
 import ma.emsi.fraud.service.EnrichmentService;
+import ma.emsi.fraud.service.FraudDecisionService;
 import ma.emsi.fraud.service.MlService;
+import ma.emsi.fraud.service.PipelineInstrumentation;
+import ma.emsi.fraud.service.RulePreFilter;
+import ma.emsi.fraud.service.VelocityFeatureStore;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(FraudController.class)
+@Import({ FraudDecisionService.class, PipelineInstrumentation.class, VelocityFeatureStore.class,
+                AdaptiveConcurrencyLimiter.class, SimpleMeterRegistry.class })
 class FraudControllerTest {
 
         @Autowired
         private WebTestClient webTestClient;
 
+        @Autowired
+        private SimpleMeterRegistry meterRegistry;
+
+        @Autowired
+        private AdaptiveConcurrencyLimiter limiter;
+
         @MockBean
         private EnrichmentService enrichmentService;
 
@@ -30,7 +56,10 @@ class FraudControllerTest {
         private MlService mlService;
 
         @MockBean
-        private KafkaTemplate<String, FraudCheck> kafkaTemplate;
+        private AuditPublisher auditPublisher;
+
+        @MockBean
+        private RulePreFilter rulePreFilter;
 
         @Test
         @SuppressWarnings("null")
@@ -54,12 +83,12 @@ class FraudControllerTest {
                                 .thenReturn(Mono.just(new EnrichmentService.EnrichmentResult(false, false)));
 
                 // Mock MlService to return a low score
-                when(mlService.predict(anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                                .thenReturn(0.00001f);
+                when(mlService.score(any(FraudRequest.class)))
+                                .thenReturn(Mono.just(0.00001f));
 
-                // Mock Kafka (returns future)
-                when(kafkaTemplate.send(anyString(), any(FraudCheck.class)))
-                                .thenReturn(CompletableFuture.completedFuture(null));
+                // Mock Kafka audit (non-blocking hand-off)
+                when(auditPublisher.publish(any(FraudCheck.class)))
+                                .thenReturn(Mono.empty());
 
                 // Act & Assert
                 webTestClient.post()
@@ -82,11 +111,11 @@ class FraudControllerTest {
                 when(enrichmentService.enrich(anyString(), anyString()))
                                 .thenReturn(Mono.just(new EnrichmentService.EnrichmentResult(true, true)));
 
-                when(mlService.predict(anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                                .thenReturn(0.8f);
+                when(mlService.score(any(FraudRequest.class)))
+                                .thenReturn(Mono.just(0.8f));
 
-                when(kafkaTemplate.send(anyString(), any(FraudCheck.class)))
-                                .thenReturn(CompletableFuture.completedFuture(null));
+                when(auditPublisher.publish(any(FraudCheck.class)))
+                                .thenReturn(Mono.empty());
 
                 // Act & Assert
                 webTestClient.post()
@@ -98,4 +127,196 @@ class FraudControllerTest {
                                 .jsonPath("$.score").isEqualTo(0.8)
                                 .jsonPath("$.risk").isEqualTo("HIGH");
         }
+
+        @Test
+        @SuppressWarnings("null")
+        void checkFraud_ShouldSkipEnrichmentAndModel_WhenARuleDecides() {
+                FraudRequest request = new FraudRequest(181000.0, 181000.0, 0.0, 1, 0.0, 0.0, "127.0.0.1",
+                                "drain@example.com");
+
+                when(rulePreFilter.evaluate(any(FraudRequest.class)))
+                                .thenReturn(Optional.of(new RulePreFilter.RuleDecision(1.0f, DecisionPath.RULE_FRAUD)));
+                when(auditPublisher.publish(any(FraudCheck.class)))
+                                .thenReturn(Mono.empty());
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/check")
+                                .bodyValue(request)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBody()
+                                .jsonPath("$.risk").isEqualTo("HIGH")
+                                .jsonPath("$.path").isEqualTo("RULE_FRAUD");
+
+                verifyNoInteractions(enrichmentService, mlService);
+        }
+
+        @Test
+        @SuppressWarnings("null")
+        void checkFraud_ShouldNotEnrich_WhenTheModelIsConfident() {
+                FraudRequest request = new FraudRequest(100.0, 1000.0, 900.0, 1, 0.0, 0.0, "127.0.0.1",
+                                "test@example.com");
+
+                when(mlService.score(any(FraudRequest.class))).thenReturn(Mono.just(0.00001f));
+                when(auditPublisher.publish(any(FraudCheck.class))).thenReturn(Mono.empty());
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/check")
+                                .bodyValue(request)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBody()
+                                .jsonPath("$.risk").isEqualTo("LOW")
+                                .jsonPath("$.path").isEqualTo("MODEL");
+
+                verify(enrichmentService, never()).enrich(any(), any());
+        }
+
+        @Test
+        @SuppressWarnings("null")
+        void checkFraud_ShouldLetEnrichmentDecide_WhenTheScoreIsUncertain() {
+                FraudRequest request = new FraudRequest(100.0, 1000.0, 900.0, 1, 0.0, 0.0, "10.0.0.1",
+                                "test@example.com");
+
+                // 0.00008 < seuil 0.0001, mais IP proxy : x4 -> HIGH
+                when(mlService.score(any(FraudRequest.class))).thenReturn(Mono.just(0.00008f));
+                when(enrichmentService.enrich(anyString(), anyString()))
+                                .thenReturn(Mono.just(new EnrichmentService.EnrichmentResult(true, false)));
+                when(auditPublisher.publish(any(FraudCheck.class))).thenReturn(Mono.empty());
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/check")
+                                .bodyValue(request)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBody()
+                                .jsonPath("$.score").isEqualTo(0.00032)
+                                .jsonPath("$.risk").isEqualTo("HIGH")
+                                .jsonPath("$.path").isEqualTo("MODEL_ENRICHED");
+
+                assertThat(meterRegistry.get("fraud.check.latency").tag("path", "MODEL_ENRICHED").timer().count())
+                                .isEqualTo(1);
+        }
+
+        @Test
+        @SuppressWarnings("null")
+        void checkFraud_ShouldFallBackToTheModelScore_WhenEnrichmentIsUnavailable() {
+                FraudRequest request = new FraudRequest(100.0, 1000.0, 900.0, 1, 0.0, 0.0, "10.0.0.1",
+                                "test@example.com");
+
+                when(mlService.score(any(FraudRequest.class))).thenReturn(Mono.just(0.0002f));
+                when(enrichmentService.enrich(anyString(), anyString()))
+                                .thenReturn(Mono.error(new TimeoutException("ip provider timed out")));
+                when(auditPublisher.publish(any(FraudCheck.class))).thenReturn(Mono.empty());
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/check")
+                                .bodyValue(request)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBody()
+                                .jsonPath("$.risk").isEqualTo("HIGH")
+                                .jsonPath("$.path").isEqualTo("MODEL");
+        }
+
+        @Test
+        void checkFraud_ShouldReleaseThePermit_WhenTheCheckThrowsSynchronously() {
+                FraudRequest request = new FraudRequest(100.0, 1000.0, 900.0, 1, 0.0, 0.0, "10.0.0.5", "e@example.com");
+                when(rulePreFilter.evaluate(any(FraudRequest.class))).thenReturn(Optional.empty());
+                when(mlService.score(any(FraudRequest.class))).thenThrow(new IllegalStateException("boom"));
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/check")
+                                .bodyValue(request)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBody()
+                                .jsonPath("$.risk").isEqualTo("ERROR");
+
+                assertThat(limiter.inFlight()).isZero();
+        }
+
+        @Test
+        void checkBulk_ShouldAnswerEveryLineInOrder_WithOneModelPass() {
+                FraudRequest drain = new FraudRequest(181000.0, 181000.0, 0.0, 1, 0.0, 0.0, "10.0.0.1", "a@example.com");
+                FraudRequest confident = new FraudRequest(100.0, 1000.0, 900.0, 1, 0.0, 0.0, "10.0.0.2", "b@example.com");
+                FraudRequest uncertain = new FraudRequest(200.0, 1000.0, 800.0, 1, 0.0, 0.0, "10.0.0.3", "c@example.com");
+
+                when(rulePreFilter.evaluate(any(FraudRequest.class))).thenReturn(Optional.empty());
+                when(rulePreFilter.evaluate(drain))
+                                .thenReturn(Optional.of(new RulePreFilter.RuleDecision(1.0f, DecisionPath.RULE_FRAUD)));
+                when(mlService.scoreAll(List.of(confident, uncertain)))
+                                .thenReturn(Mono.just(new float[] { 0.00001f, 0.00008f }));
+                when(enrichmentService.enrich(anyString(), anyString()))
+                                .thenReturn(Mono.just(new EnrichmentService.EnrichmentResult(true, false)));
+                when(auditPublisher.publish(any(FraudCheck.class))).thenReturn(Mono.empty());
+
+                List<FraudResponse> responses = webTestClient.post()
+                                .uri("/api/v1/fraud/bulk")
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .accept(MediaType.APPLICATION_NDJSON)
+                                .body(Flux.just(drain, confident, uncertain), FraudRequest.class)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .returnResult(FraudResponse.class)
+                                .getResponseBody()
+                                .collectList()
+                                .block();
+
+                assertThat(responses).extracting(FraudResponse::path)
+                                .containsExactly(DecisionPath.RULE_FRAUD, DecisionPath.MODEL, DecisionPath.MODEL_ENRICHED);
+                assertThat(responses).extracting(FraudResponse::risk).containsExactly("HIGH", "LOW", "HIGH");
+                verify(mlService, never()).score(any());
+                verify(auditPublisher, times(3)).publish(any(FraudCheck.class));
+        }
+
+        @Test
+        void incompleteRequests_ShouldBeRefusedBeforeTheRulesWithoutAudit() {
+                FraudRequest noAmount = new FraudRequest(null, 1000.0, 900.0, null, 0.0, 0.0, "10.0.0.4", "d@example.com");
+                FraudRequest complete = new FraudRequest(100.0, 1000.0, 900.0, 1, 0.0, 0.0, "10.0.0.2", "b@example.com");
+
+                when(rulePreFilter.evaluate(any(FraudRequest.class))).thenReturn(Optional.empty());
+                when(mlService.scoreAll(List.of(complete))).thenReturn(Mono.just(new float[] { 0.00001f }));
+                when(auditPublisher.publish(any(FraudCheck.class))).thenReturn(Mono.empty());
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/check")
+                                .bodyValue(noAmount)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBody()
+                                .jsonPath("$.risk").isEqualTo("ERROR");
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/bulk")
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .body(Flux.just(noAmount, complete), FraudRequest.class)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBodyList(FraudResponse.class)
+                                .isEqualTo(List.of(new FraudResponse(-1.0f, "ERROR"),
+                                                new FraudResponse(0.00001f, "LOW", DecisionPath.MODEL)));
+
+                verify(rulePreFilter, never()).evaluate(noAmount);
+                verify(auditPublisher, times(1)).publish(any(FraudCheck.class));
+        }
+
+        @Test
+        void checkBulk_Offline_ShouldSkipEnrichmentAndAudit() {
+                FraudRequest uncertain = new FraudRequest(200.0, 1000.0, 800.0, 1, 0.0, 0.0, "10.0.0.3", "c@example.com");
+
+                when(rulePreFilter.evaluate(any(FraudRequest.class))).thenReturn(Optional.empty());
+                when(mlService.scoreAll(anyList())).thenReturn(Mono.just(new float[] { 0.00008f }));
+
+                webTestClient.post()
+                                .uri("/api/v1/fraud/bulk?offline=true")
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .body(Flux.just(uncertain), FraudRequest.class)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBodyList(FraudResponse.class)
+                                .contains(new FraudResponse(0.00008f, "LOW", DecisionPath.MODEL));
+
+                verifyNoInteractions(enrichmentService, auditPublisher);
+        }
 }
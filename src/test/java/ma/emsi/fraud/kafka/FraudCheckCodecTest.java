@@ -0,0 +1,96 @@
+package ma.emsi.fraud.kafka;
+
+import ma.emsi.fraud.model.DecisionPath;
+import ma.emsi.fraud.model.FraudCheck;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FraudCheckCodecTest {
+
+    private static final String TOPIC = "fraud-checks";
+
+    @Test
+    void binaryRoundTrip_ShouldPreserveAllFieldsIncludingNulls() {
+        FraudCheck check = sample();
+        check.setOldBalanceDest(null);
+        check.setAccountId(null);
+
+        FraudCheck decoded = FraudCheckCodec.decode(FraudCheckCodec.encode(check));
+
+        assertThat(decoded).isEqualTo(check);
+    }
+
+    @Test
+    void deserializer_ShouldStillReadJsonRecords() {
+        FraudCheckDeserializer deserializer = new FraudCheckDeserializer();
+        deserializer.configure(Map.of(), false);
+        JsonSerializer<Object> json = new JsonSerializer<>();
+        FraudCheck check = sample();
+        check.setCreatedAt(check.getCreatedAt().withNano(0)); // JSON n'a que la seconde
+
+        // Avec en-têtes de type (ancien producteur) et sans
+        RecordHeaders headers = new RecordHeaders();
+        byte[] withHeaders = json.serialize(TOPIC, headers, check);
+        assertThat(deserializer.deserialize(TOPIC, headers, withHeaders)).isEqualTo(check);
+        assertThat(deserializer.deserialize(TOPIC, new RecordHeaders(), json.serialize(TOPIC, check)))
+                .isEqualTo(check);
+    }
+
+    @Test
+    void serializer_ShouldBeMuchSmallerThanJson() {
+        FraudCheckSerializer serializer = new FraudCheckSerializer();
+        serializer.configure(Map.of(), false);
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] binary = serializer.serialize(TOPIC, headers, sample());
+        byte[] json = new JsonSerializer<>().serialize(TOPIC, new RecordHeaders(), sample());
+
+        assertThat(headers.toArray()).isEmpty(); // pas d'en-tête __TypeId__
+        assertThat(binary.length).isLessThan(json.length / 2);
+    }
+
+    @Test
+    void decode_ShouldReadVersion1RecordsWrittenBeforeDecisionPath() {
+        FraudCheck check = sample();
+        check.setDecisionPath(null);
+        byte[] data = FraudCheckCodec.encode(check);
+        data[1] = 1;
+
+        assertThat(FraudCheckCodec.decode(data)).isEqualTo(check);
+    }
+
+    @Test
+    void decode_ShouldRejectUnknownVersions() {
+        byte[] data = FraudCheckCodec.encode(sample());
+        data[1] = 99;
+
+        assertThatThrownBy(() -> FraudCheckCodec.decode(data)).isInstanceOf(SerializationException.class);
+    }
+
+    static FraudCheck sample() {
+        FraudCheck check = new FraudCheck();
+        check.setId(12345L);
+        check.setAmount(181000.0);
+        check.setScore(0.9731f);
+        check.setRisk("HIGH");
+        check.setTransactionType(1);
+        check.setOldBalance(181000.0);
+        check.setNewBalance(0.0);
+        check.setOldBalanceDest(0.0);
+        check.setNewBalanceDest(21182.0);
+        check.setIpAddress("192.168.1.45");
+        check.setEmail("customer.name@example.com");
+        check.setAccountId("C1231006815");
+        check.setDecisionPath(DecisionPath.MODEL);
+        check.setCreatedAt(LocalDateTime.of(2026, 3, 14, 9, 26, 53, 589_793_000));
+        return check;
+    }
+}
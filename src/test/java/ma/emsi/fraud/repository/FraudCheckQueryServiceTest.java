@@ -0,0 +1,107 @@
+package ma.emsi.fraud.repository;
+
+import ma.emsi.fraud.config.JdbcSchedulerConfig;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import ma.emsi.fraud.model.RecordsCursor;
+import ma.emsi.fraud.model.RecordsPage;
+import ma.emsi.fraud.service.FraudCheckQueryService;
+import ma.emsi.fraud.service.MlService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pagination keyset : les lignes partageant le même created_at doivent être
+ * départagées par id, sans doublon ni trou d'une page à l'autre.
+ */
+@DataJpaTest
+@Import({FraudCheckQueryService.class, JdbcSchedulerConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // les lectures tournent sur le scheduler "jdbc"
+class FraudCheckQueryServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 1, 1, 12, 0);
+    private static final FraudCheckFilter NO_FILTER = new FraudCheckFilter(null, null, null, null, null, null);
+
+    @MockBean
+    private MlService mlService;
+
+    @Autowired
+    private FraudCheckQueryService queryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("DELETE FROM fraud_checks");
+        // 120 lignes, 3 par seconde : beaucoup d'égalités sur created_at
+        for (int i = 0; i < 120; i++) {
+            jdbcTemplate.update("INSERT INTO fraud_checks (amount, score, risk, transaction_type, created_at) "
+                            + "VALUES (?, ?, ?, ?, ?)",
+                    100.0 + i, i / 120f, i % 4 == 0 ? "HIGH" : "LOW", i % 5, BASE.plusSeconds(i / 3));
+        }
+    }
+
+    @Test
+    void pagesThroughAllRowsWithoutDuplicates() {
+        List<FraudCheck> seen = new ArrayList<>();
+        RecordsCursor cursor = null;
+        int pages = 0;
+        do {
+            RecordsPage page = queryService.search(NO_FILTER, cursor, 25).block();
+            seen.addAll(page.items());
+            cursor = page.nextCursor() != null ? RecordsCursor.decode(page.nextCursor()) : null;
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(5);
+        assertThat(seen).hasSize(120);
+        Set<Long> ids = new HashSet<>();
+        seen.forEach(check -> ids.add(check.getId()));
+        assertThat(ids).hasSize(120);
+        for (int i = 1; i < seen.size(); i++) {
+            FraudCheck previous = seen.get(i - 1);
+            FraudCheck current = seen.get(i);
+            assertThat(previous.getCreatedAt()).isAfterOrEqualTo(current.getCreatedAt());
+            if (previous.getCreatedAt().equals(current.getCreatedAt())) {
+                assertThat(previous.getId()).isGreaterThan(current.getId());
+            }
+        }
+    }
+
+    @Test
+    void appliesFiltersTogetherWithCursor() {
+        FraudCheckFilter filter = new FraudCheckFilter("HIGH", List.of(0, 2), 0.1f, null,
+                BASE, BASE.plusSeconds(35));
+
+        RecordsPage first = queryService.search(filter, null, 3).block();
+        RecordsPage second = queryService.search(filter, RecordsCursor.decode(first.nextCursor()), 3).block();
+
+        List<FraudCheck> all = new ArrayList<>(first.items());
+        all.addAll(second.items());
+        assertThat(all).allSatisfy(check -> {
+            assertThat(check.getRisk()).isEqualTo("HIGH");
+            assertThat(check.getTransactionType()).isIn(0, 2);
+            assertThat(check.getScore()).isGreaterThanOrEqualTo(0.1f);
+            assertThat(check.getCreatedAt()).isBefore(BASE.plusSeconds(35));
+        });
+        // i multiple de 4 et i % 5 ∈ {0,2}, 12 <= i < 105 -> 20, 40, 60, 80, 100, 12, 32, 52, 72, 92
+        assertThat(all).hasSize(6);
+        assertThat(second.nextCursor()).isNotNull();
+    }
+}
@@ -0,0 +1,126 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, true, 10, 2,
+            100, Duration.ofMillis(100), 0.5, 0.7, 0.9);
+
+    @Test
+    void acquire_ShouldDegradeStepByStepAsInFlightApproachesTheLimit() {
+        List<AdaptiveConcurrencyLimiter.Level> levels = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            levels.add(limiter.acquire().level());
+        }
+
+        assertThat(levels.subList(0, 7)).containsOnly(AdaptiveConcurrencyLimiter.Level.FULL);
+        assertThat(levels.subList(7, 9)).containsOnly(AdaptiveConcurrencyLimiter.Level.SKIP_ENRICHMENT);
+        assertThat(levels.get(9)).isEqualTo(AdaptiveConcurrencyLimiter.Level.RULES_ONLY);
+        assertThat(levels.get(10)).isEqualTo(AdaptiveConcurrencyLimiter.Level.REJECT);
+        assertThat(limiter.inFlight()).isEqualTo(10); // un rejet n'est pas compté en cours
+        assertThat(meterRegistry.get("fraud.overload.requests").tag("level", "REJECT").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void acquire_ShouldNeverAdmitMoreThanTheLimitUnderAConcurrentBurst() throws Exception {
+        // Limite fixe à 10 : plafond 10, cible de latence jamais dépassée. Compteurs
+        // qui cèdent le processeur : élargit toute fenêtre entre lecture et admission
+        AdaptiveConcurrencyLimiter fixed = new AdaptiveConcurrencyLimiter(new YieldingMeterRegistry(), true, 10, 10,
+                10, Duration.ofHours(1), 0.5, 0.7, 0.9);
+        AtomicInteger admitted = new AtomicInteger();
+        AtomicInteger maxAdmitted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<?>> burst = new ArrayList<>();
+        for (int t = 0; t < 32; t++) {
+            burst.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    AdaptiveConcurrencyLimiter.Permit permit = fixed.acquire();
+                    if (permit.level() == AdaptiveConcurrencyLimiter.Level.REJECT) {
+                        rejected.incrementAndGet();
+                        continue;
+                    }
+                    maxAdmitted.accumulateAndGet(admitted.incrementAndGet(), Math::max);
+                    Thread.yield();
+                    admitted.decrementAndGet();
+                    permit.release(false);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> thread : burst) {
+            thread.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(maxAdmitted.get()).isLessThanOrEqualTo(10);
+        assertThat(rejected.get()).isPositive();
+        assertThat(fixed.inFlight()).isZero();
+    }
+
+    @Test
+    void onSample_ShouldDecreaseOncePerWindowWhenSlowAndGrowSlowlyWhenBusyAndFast() {
+        long now = System.nanoTime();
+
+        limiter.onSample(now, 2 * TARGET, 10, false);
+        limiter.onSample(now + TARGET / 2, 2 * TARGET, 10, false); // même épisode de congestion
+        assertThat(limiter.limit()).isCloseTo(5.0, offset(1e-9));
+
+        limiter.onSample(now + TARGET, 0, 0, true); // erreur : nouvelle baisse
+        assertThat(limiter.limit()).isCloseTo(2.5, offset(1e-9));
+
+        limiter.onSample(now + 3 * TARGET, TARGET / 10, 2, false);
+        assertThat(limiter.limit()).isCloseTo(2.5 + 1 / 2.5, offset(1e-9));
+
+        limiter.onSample(now + 4 * TARGET, TARGET / 10, 0, false); // limite peu utilisée : inchangée
+        assertThat(limiter.limit()).isCloseTo(2.9, offset(1e-9));
+    }
+
+    private static final class YieldingMeterRegistry extends SimpleMeterRegistry {
+        @Override
+        protected Counter newCounter(Meter.Id id) {
+            Counter counter = super.newCounter(id);
+            return new Counter() {
+                @Override
+                public void increment(double amount) {
+                    Thread.yield();
+                    counter.increment(amount);
+                }
+
+                @Override
+                public double count() {
+                    return counter.count();
+                }
+
+                @Override
+                public Meter.Id getId() {
+                    return counter.getId();
+                }
+            };
+        }
+    }
+}
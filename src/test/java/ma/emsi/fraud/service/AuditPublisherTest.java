@@ -0,0 +1,144 @@
+package ma.emsi.fraud.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudCheck;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuditPublisherTest {
+
+    @TempDir
+    Path outboxDir;
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, FraudCheck> kafkaTemplate = mock(KafkaTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AuditOutbox outbox;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        outbox = new AuditOutbox(kafkaTemplate, new ObjectMapper().findAndRegisterModules(), meterRegistry,
+                outboxDir.toString(), 1000);
+        outbox.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbox.close();
+    }
+
+    @Test
+    void failedSend_ShouldBeSpooledThenReplayedWithTheSameKey() throws Exception {
+        AuditPublisher publisher = new AuditPublisher(kafkaTemplate, outbox, meterRegistry, 100);
+        when(kafkaTemplate.send(anyString(), anyString(), any(FraudCheck.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        publisher.publish(check("acc-42")).block();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> outbox.pending() == 1);
+        assertThat(meterRegistry.counter("fraud.audit.failed").count()).isEqualTo(1);
+
+        // Le broker revient : l'outbox est rejouée puis vidée
+        when(kafkaTemplate.send(anyString(), anyString(), any(FraudCheck.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        outbox.retry();
+
+        assertThat(outbox.pending()).isZero();
+        try (var files = Files.list(outboxDir)) {
+            assertThat(files).isEmpty();
+        }
+        verify(kafkaTemplate, timeout(1000).times(2)).send(eq(AuditPublisher.TOPIC), eq("acc-42"), any(FraudCheck.class));
+        publisher.close();
+    }
+
+    @Test
+    void saturatedProducer_ShouldSpoolWithoutSending() {
+        AuditPublisher publisher = new AuditPublisher(kafkaTemplate, outbox, meterRegistry, 0);
+
+        publisher.publish(check(null)).block();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> outbox.pending() == 1);
+        assertThat(meterRegistry.counter("fraud.audit.shed").count()).isEqualTo(1);
+        verify(kafkaTemplate, never()).send(anyString(), any(), any(FraudCheck.class));
+        publisher.close();
+    }
+
+    @Test
+    void publishDuringShutdown_ShouldSpoolAndReleaseThePermit() {
+        AuditPublisher publisher = new AuditPublisher(kafkaTemplate, outbox, meterRegistry, 1);
+        publisher.close();
+
+        publisher.publish(check("acc-7")).block();
+        publisher.publish(check("acc-8")).block();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> outbox.pending() == 2);
+        // Permis rendu : le second audit n'est pas compté comme délesté
+        assertThat(meterRegistry.counter("fraud.audit.shed").count()).isZero();
+        assertThat(meterRegistry.counter("fraud.audit.failed").count()).isEqualTo(2);
+        verify(kafkaTemplate, never()).send(anyString(), any(), any(FraudCheck.class));
+    }
+
+    @Test
+    void publishAfterOutboxClose_ShouldWriteSynchronouslyWithoutError() throws Exception {
+        AuditPublisher publisher = new AuditPublisher(kafkaTemplate, outbox, meterRegistry, 1);
+        publisher.close();
+        outbox.close();
+
+        publisher.publish(check("acc-9")).block();
+
+        assertThat(outbox.pending()).isEqualTo(1);
+        try (var files = Files.list(outboxDir)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    @Test
+    void unreadableOutboxLines_ShouldLeaveThePendingGaugeWithTheFile() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Files.write(outboxDir.resolve("audit-0-0.ndjson"),
+                List.of(objectMapper.writeValueAsString(check("acc-1")), "{not json"));
+        outbox.init();
+        assertThat(outbox.pending()).isEqualTo(2);
+
+        when(kafkaTemplate.send(anyString(), anyString(), any(FraudCheck.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        outbox.retry();
+
+        assertThat(outbox.pending()).isZero();
+        assertThat(meterRegistry.get("fraud.audit.outbox.pending").gauge().value()).isZero();
+    }
+
+    private static FraudCheck check(String accountId) {
+        FraudCheck check = new FraudCheck();
+        check.setAmount(100.0);
+        check.setScore(0.5f);
+        check.setRisk("HIGH");
+        check.setIpAddress("10.0.0.1");
+        check.setAccountId(accountId);
+        check.setCreatedAt(LocalDateTime.now());
+        return check;
+    }
+}
@@ -0,0 +1,108 @@
+package ma.emsi.fraud.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.repository.FraudCheckRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ClusterStateServiceTest {
+
+    private static final TopicPartition P0 = new TopicPartition("fraud-checks", 0);
+    private static final TopicPartition P1 = new TopicPartition("fraud-checks", 1);
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<Object, Object> kafkaTemplate = mock(KafkaTemplate.class);
+
+    @Test
+    void windows_ShouldMergeOwnedPartitionsWithPublishedStateOfOthers() {
+        ClusterStateService node = node("a");
+        node.record(List.of(check("HIGH", 0.9f), check("LOW", 0.1f)), List.of(0, 0));
+
+        ClusterStateService other = node("b");
+        other.record(List.of(check("LOW", 0.2f)), List.of(1));
+        node.onState(List.of(publishedState(other, P1)), List.of(0L));
+
+        FraudStatsService.Stats lastMinute = node.windows().get("1m");
+        assertThat(lastMinute.total()).isEqualTo(3);
+        assertThat(lastMinute.highRisk()).isEqualTo(1);
+        assertThat(lastMinute.avgScore()).isCloseTo(0.4, offset(1e-6));
+    }
+
+    @Test
+    void rebalance_ShouldHandOverPartitionStateThroughTheStateTopic() throws Exception {
+        ClusterStateService previousOwner = node("a");
+        previousOwner.record(List.of(check("HIGH", 0.8f), check("HIGH", 0.6f)), List.of(0, 0));
+        ClusterStateService.PartitionState state = publishedState(previousOwner, P0);
+        assertThat(previousOwner.windows().get("1h").total()).isZero();
+
+        // Le topic d'état transporte du JSON
+        ObjectMapper mapper = new ObjectMapper();
+        ClusterStateService.PartitionState received = mapper.readValue(mapper.writeValueAsBytes(state),
+                ClusterStateService.PartitionState.class);
+
+        ClusterStateService newOwner = node("b");
+        newOwner.onState(List.of(received), List.of(0L));
+        newOwner.rebalanceListener().onPartitionsAssigned(consumerAtStateEnd(1L), List.of(P0));
+        newOwner.record(List.of(check("LOW", 0.1f)), List.of(0));
+
+        FraudStatsService.Stats lastHour = newOwner.windows().get("1h");
+        assertThat(lastHour.total()).isEqualTo(3);
+        assertThat(lastHour.highRisk()).isEqualTo(2);
+    }
+
+    private ClusterStateService node(String nodeId) {
+        return new ClusterStateService(kafkaTemplate, mock(FraudCheckRepository.class), new SimpleMeterRegistry(),
+                nodeId, Duration.ofMillis(200), true);
+    }
+
+    /**
+     * Révocation de la partition : l'état publié de façon synchrone est capturé
+     */
+    private ClusterStateService.PartitionState publishedState(ClusterStateService owner, TopicPartition partition) {
+        when(kafkaTemplate.send(eq(ClusterStateService.STATE_TOPIC), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        owner.rebalanceListener().onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(partition));
+
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, atLeastOnce())
+                .send(eq(ClusterStateService.STATE_TOPIC), eq(String.valueOf(partition.partition())), sent.capture());
+        return (ClusterStateService.PartitionState) sent.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Consumer<?, ?> consumerAtStateEnd(long endOffset) {
+        Consumer<Object, Object> consumer = mock(Consumer.class);
+        when(consumer.endOffsets(anyCollection(), any(Duration.class)))
+                .thenReturn(Map.of(new TopicPartition(ClusterStateService.STATE_TOPIC, 0), endOffset));
+        return consumer;
+    }
+
+    private static FraudCheck check(String risk, float score) {
+        FraudCheck check = new FraudCheck();
+        check.setAmount(100.0);
+        check.setScore(score);
+        check.setRisk(risk);
+        return check;
+    }
+}
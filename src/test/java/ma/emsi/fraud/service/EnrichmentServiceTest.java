@@ -0,0 +1,195 @@
+package ma.emsi.fraud.service;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnrichmentServiceTest {
+
+    private EnrichmentStubServer stub;
+    private EnrichmentCache cache;
+    private EnrichmentService enrichmentService;
+
+    @BeforeEach
+    void setUp() {
+        stub = new EnrichmentStubServer(Duration.ofMillis(200));
+        WebClientEnrichmentClient client = new WebClientEnrichmentClient(WebClient.builder(),
+                stub.baseUrl(), stub.baseUrl(), 500, 20_000, Duration.ofSeconds(5));
+        cache = new EnrichmentCache(new SimpleMeterRegistry(), Duration.ofMinutes(10), Duration.ofHours(1),
+                Duration.ofSeconds(30), 10_000);
+        enrichmentService = new EnrichmentService(client, cache, new SimpleMeterRegistry(),
+                CircuitBreakerRegistry.ofDefaults(), bulkheads(1_000));
+        ReflectionTestUtils.setField(enrichmentService, "ipTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(enrichmentService, "emailTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(enrichmentService, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(enrichmentService, "hedgeMinDelay", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(enrichmentService, "hedgeMinSamples", 20L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void enrich_ShouldCombineBothLookups() {
+        StepVerifier.create(enrichmentService.enrich("10.0.0.1", "leaked@example.com"))
+                .assertNext(result -> {
+                    assertThat(result.isProxy()).isTrue();
+                    assertThat(result.isEmailLeaked()).isTrue();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void enrich_ShouldRunThousandsOfLookupsConcurrentlyWithoutThreadPerCall() {
+        int checks = 1_000;
+        int threadsBefore = Thread.activeCount();
+        long start = System.nanoTime();
+
+        Long clean = Flux.range(0, checks)
+                .flatMap(i -> enrichmentService.enrich("192.168.0." + (i % 250), "user" + i + "@example.com"),
+                        checks)
+                .filter(result -> !result.isProxy() && !result.isEmailLeaked())
+                .count()
+                .block(Duration.ofSeconds(30));
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        assertThat(clean).isEqualTo(checks);
+        // 2000 appels de 200ms : en série ce serait 400s
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(15));
+        assertThat(Thread.activeCount() - threadsBefore).isLessThan(100);
+    }
+
+    @Test
+    void enrich_ShouldReturnPartialResultWhenALookupExceedsItsTimeout() {
+        ReflectionTestUtils.setField(enrichmentService, "ipTimeout", Duration.ofMillis(50));
+
+        StepVerifier.create(enrichmentService.enrich("10.0.0.1", "leaked@example.com"))
+                .assertNext(result -> {
+                    assertThat(result.complete()).isFalse();
+                    assertThat(result.isProxy()).isFalse();
+                    assertThat(result.isEmailLeaked()).isTrue();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void enrich_ShouldFailOnlyWhenBothLookupsFail() {
+        ReflectionTestUtils.setField(enrichmentService, "ipTimeout", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(enrichmentService, "emailTimeout", Duration.ofMillis(50));
+
+        StepVerifier.create(enrichmentService.enrich("192.168.0.1", "user@example.com"))
+                .expectError(EnrichmentCache.EnrichmentUnavailableException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void enrich_ShouldHedgeALookupSlowerThanItsP95() throws InterruptedException {
+        AtomicInteger ipCalls = new AtomicInteger();
+        EnrichmentClient slowFirstCall = new EnrichmentClient() {
+            @Override
+            public Mono<Boolean> isProxy(String ip) {
+                Duration latency = ip.equals("10.9.9.9") && ipCalls.incrementAndGet() == 1
+                        ? Duration.ofSeconds(2) : Duration.ofMillis(5);
+                return Mono.delay(latency).thenReturn(ip.startsWith("10."));
+            }
+
+            @Override
+            public Mono<Boolean> isEmailLeaked(String email) {
+                return Mono.just(false);
+            }
+        };
+        EnrichmentService hedging = new EnrichmentService(slowFirstCall, cache, new SimpleMeterRegistry(),
+                CircuitBreakerRegistry.ofDefaults(), bulkheads(100));
+        ReflectionTestUtils.setField(hedging, "ipTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(hedging, "emailTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(hedging, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(hedging, "hedgeMinDelay", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(hedging, "hedgeMinSamples", 20L);
+
+        Flux.range(0, 50).concatMap(i -> hedging.enrich("192.168.1." + i, null)).blockLast(Duration.ofSeconds(5));
+        // Le p95 est relu au plus une fois par seconde
+        Thread.sleep(1_100);
+
+        long start = System.nanoTime();
+        var result = hedging.enrich("10.9.9.9", null).block(Duration.ofSeconds(5));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(result.isProxy()).isTrue();
+        assertThat(result.complete()).isTrue();
+        assertThat(ipCalls.get()).isEqualTo(2);
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void enrich_ShouldServeRepeatCustomersFromCache() {
+        enrichmentService.enrich("10.0.0.7", "Repeat@Example.com").block(Duration.ofSeconds(5));
+        int callsAfterFirst = stub.requestCount();
+
+        long start = System.nanoTime();
+        var result = enrichmentService.enrich("10.0.0.7", "repeat@example.com").block(Duration.ofSeconds(5));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(result.isProxy()).isTrue();
+        assertThat(stub.requestCount()).isEqualTo(callsAfterFirst);
+        assertThat(elapsed).isLessThan(Duration.ofMillis(100));
+    }
+
+    @Test
+    void enrich_ShouldCollapseConcurrentMissesForTheSameKey() {
+        Flux.range(0, 200)
+                .flatMap(i -> enrichmentService.enrich("172.16.0.1", "same@example.com"), 200)
+                .blockLast(Duration.ofSeconds(10));
+
+        assertThat(stub.requestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void enrich_ShouldNotCacheLocalBulkheadRejections() {
+        EnrichmentService saturated = new EnrichmentService(new WebClientEnrichmentClient(WebClient.builder(),
+                stub.baseUrl(), stub.baseUrl(), 500, 20_000, Duration.ofSeconds(5)), cache,
+                new SimpleMeterRegistry(), CircuitBreakerRegistry.ofDefaults(), bulkheads(1));
+        ReflectionTestUtils.setField(saturated, "ipTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(saturated, "emailTimeout", Duration.ofSeconds(5));
+
+        var first = Flux.merge(saturated.enrich("192.168.5.1", null), saturated.enrich("192.168.5.2", null))
+                .collectList().block(Duration.ofSeconds(5));
+        assertThat(first).extracting(EnrichmentService.EnrichmentResult::complete).containsOnlyOnce(false);
+
+        // Le refus du bulkhead n'a pas été mis en cache négatif : la clé refusée est rechargée
+        assertThat(saturated.enrich("192.168.5.1", null).block(Duration.ofSeconds(5)).complete()).isTrue();
+        assertThat(saturated.enrich("192.168.5.2", null).block(Duration.ofSeconds(5)).complete()).isTrue();
+        assertThat(stub.requestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void enrich_ShouldCacheFailuresBriefly() {
+        ReflectionTestUtils.setField(enrichmentService, "ipTimeout", Duration.ofMillis(50));
+        enrichmentService.enrich("192.168.0.9", "user@example.com").block(Duration.ofSeconds(5));
+        int callsAfterFailure = stub.requestCount();
+
+        StepVerifier.create(enrichmentService.enrich("192.168.0.9", "user@example.com"))
+                .assertNext(result -> assertThat(result.complete()).isFalse())
+                .verifyComplete();
+        assertThat(stub.requestCount()).isEqualTo(callsAfterFailure);
+    }
+
+    private static BulkheadRegistry bulkheads(int maxConcurrentCalls) {
+        return BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(maxConcurrentCalls).build());
+    }
+}
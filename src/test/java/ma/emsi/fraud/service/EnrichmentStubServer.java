@@ -0,0 +1,56 @@
+package ma.emsi.fraud.service;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serveur HTTP local qui imite les APIs IP & Email pour les tests.
+ * Une IP en 10.x est un proxy, un email contenant "leak" est compromis.
+ */
+class EnrichmentStubServer implements AutoCloseable {
+
+    private final DisposableServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile Duration delay;
+
+    EnrichmentStubServer(Duration delay) {
+        this.delay = delay;
+        this.server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/v1/ip/{ip}", (request, response) -> {
+                            requests.incrementAndGet();
+                            boolean proxy = request.param("ip").startsWith("10.");
+                            return response.header("Content-Type", "application/json")
+                                    .sendString(Mono.delay(this.delay).map(tick -> "{\"proxy\":" + proxy + "}"));
+                        })
+                        .get("/v1/email/{email}", (request, response) -> {
+                            requests.incrementAndGet();
+                            boolean leaked = request.param("email").contains("leak");
+                            return response.header("Content-Type", "application/json")
+                                    .sendString(Mono.delay(this.delay).map(tick -> "{\"leaked\":" + leaked + "}"));
+                        }))
+                .bindNow();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    int requestCount() {
+        return requests.get();
+    }
+
+    void setDelay(Duration delay) {
+        this.delay = delay;
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,50 @@
+package ma.emsi.fraud.service;
+
+import ma.emsi.fraud.model.FraudRequest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeatureEncoderTest {
+
+    private final FraudRequest request = new FraudRequest(9000.0, 10000.0, 1000.0, 1, null, 250.0,
+            "127.0.0.1", "test@example.com");
+
+    @Test
+    void encode_ShouldWriteFeaturesInTrainingOrder() {
+        FloatBuffer buffer = FeatureEncoder.buffer(2);
+        FeatureEncoder.encode(request, buffer, 1);
+
+        assertThat(buffer.isDirect()).isTrue();
+        assertThat(buffer.limit()).isEqualTo(2 * FeatureEncoder.FEATURES);
+        float[] row = new float[FeatureEncoder.FEATURES];
+        buffer.get(FeatureEncoder.FEATURES, row);
+        assertThat(row).containsExactly(1f, 9000f, 10000f, 1000f, 0f, 250f);
+    }
+
+    @Test
+    void encode_ShouldNotAllocateOnSteadyState() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // Warm-up : buffer du thread alloué une fois
+        encodeBatch(64);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            encodeBatch(64);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertThat(allocated).isZero();
+    }
+
+    private void encodeBatch(int rows) {
+        FloatBuffer buffer = FeatureEncoder.buffer(rows);
+        for (int i = 0; i < rows; i++) {
+            FeatureEncoder.encode(request, buffer, i);
+        }
+    }
+}
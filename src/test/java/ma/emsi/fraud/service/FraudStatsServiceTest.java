@@ -0,0 +1,63 @@
+package ma.emsi.fraud.service;
+
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.repository.FraudCheckRepository;
+import ma.emsi.fraud.repository.RiskAggregate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FraudStatsServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void record_ShouldAddBatchesOnTopOfTheSeededAggregate() {
+        FraudCheckRepository repository = mock(FraudCheckRepository.class);
+        when(repository.aggregateByRisk()).thenReturn(new RiskAggregate(10L, 2L, 8L, 1.0));
+        FraudStatsService statsService = new FraudStatsService(repository, mock(ObjectProvider.class));
+        statsService.seed();
+
+        statsService.record(List.of(check("HIGH", 0.9f), check("LOW", 0.1f)));
+
+        FraudStatsService.Stats totals = statsService.totals();
+        assertThat(totals.total()).isEqualTo(12);
+        assertThat(totals.highRisk()).isEqualTo(3);
+        assertThat(totals.lowRisk()).isEqualTo(9);
+        assertThat(totals.avgScore()).isCloseTo(2.0 / 12, offset(1e-6));
+
+        // Les fenêtres ne voient que le trafic live, pas l'amorçage
+        assertThat(statsService.windows().get("1m").total()).isEqualTo(2);
+        assertThat(statsService.windows().get("24h").highRisk()).isEqualTo(1);
+    }
+
+    @Test
+    void rollingWindow_ShouldForgetBucketsOlderThanTheWindow() {
+        RollingWindow window = new RollingWindow(60, 1000);
+
+        window.add(0, 5, 1, 1.0);
+        window.add(30_000, 3, 0, 0.3);
+
+        assertThat(window.snapshot(30_000).total()).isEqualTo(8);
+        assertThat(window.snapshot(61_000).total()).isEqualTo(3);
+        assertThat(window.snapshot(91_000).total()).isZero();
+
+        // Réutilisation d'une tranche : remise à zéro
+        window.add(120_000, 2, 2, 1.8);
+        assertThat(window.snapshot(120_000).highRisk()).isEqualTo(2);
+        assertThat(window.snapshot(120_000).total()).isEqualTo(2);
+    }
+
+    private static FraudCheck check(String risk, float score) {
+        FraudCheck check = new FraudCheck();
+        check.setAmount(100.0);
+        check.setScore(score);
+        check.setRisk(risk);
+        return check;
+    }
+}
@@ -0,0 +1,189 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.FraudCheckFilter;
+import ma.emsi.fraud.model.StreamSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class FraudStreamServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FraudStreamService streamService;
+    private long base;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        streamService = new FraudStreamService(meterRegistry);
+        ReflectionTestUtils.setField(streamService, "bufferSize", 4);
+        ReflectionTestUtils.setField(streamService, "defaultPolicy", StreamPolicy.DROP_OLDEST);
+        ReflectionTestUtils.setField(streamService, "replaySize", 8);
+        streamService.init();
+        base = streamService.lastEventId();
+    }
+
+    @Test
+    void dropOldest_ShouldKeepTheNewestEventsForASlowClient() {
+        StepVerifier.create(stream(StreamPolicy.DROP_OLDEST, FraudCheckFilter.NONE, null), 0)
+                .then(() -> push(10))
+                .thenRequest(10)
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(7)))
+                .expectNextCount(3)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.counter("fraud.stream.dropped", "policy", "DROP_OLDEST").count()).isEqualTo(6);
+    }
+
+    @Test
+    void latest_ShouldOnlyDeliverTheLastPendingEvent() {
+        StepVerifier.create(stream(StreamPolicy.LATEST, FraudCheckFilter.NONE, null), 0)
+                .then(() -> push(5))
+                .thenRequest(10)
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(5)))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void conflate_ShouldFoldTheOverflowIntoASummaryEvent() {
+        StepVerifier.create(stream(StreamPolicy.CONFLATE, FraudCheckFilter.NONE, null), 0)
+                .then(() -> push(10))
+                .thenRequest(10)
+                .expectNextCount(4)
+                .assertNext(event -> {
+                    assertThat(event.event()).isEqualTo("summary");
+                    StreamSummary summary = (StreamSummary) event.data();
+                    assertThat(summary.count()).isEqualTo(6);
+                    assertThat(summary.firstEventId()).isEqualTo(base + 5);
+                    assertThat(summary.lastEventId()).isEqualTo(base + 10);
+                    assertThat(summary.highRisk()).isEqualTo(3); // 6, 8, 10
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void concurrentEmitters_ShouldNotLoseEventsForAFastClient() throws Exception {
+        ReflectionTestUtils.setField(streamService, "bufferSize", 10_000);
+        List<ServerSentEvent<?>> received = new CopyOnWriteArrayList<>();
+        Disposable client = streamService.getFraudStream().subscribe(received::add);
+
+        ExecutorService emitters = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            emitters.submit(() -> {
+                IntStream.range(0, 1000).forEach(i -> streamService.pushEvent(check(i)));
+                done.countDown();
+            });
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        emitters.shutdown();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 4000);
+        assertThat(received).extracting(ServerSentEvent::id)
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, 4000).mapToObj(this::id).toList());
+
+        client.dispose();
+        assertThat(streamService.subscriberCount()).isZero();
+    }
+
+    @Test
+    void filter_ShouldOnlyDeliverMatchingEvents() {
+        FraudCheckFilter highOnly = new FraudCheckFilter("HIGH", null, 0.5f, null, null, null);
+
+        StepVerifier.create(stream(StreamPolicy.DROP_OLDEST, highOnly, null), 0)
+                .then(() -> push(8))
+                .thenRequest(10)
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(6)))
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(8)))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void lastEventId_ShouldReplayMissedEventsBeforeLiveOnes() {
+        push(5);
+
+        StepVerifier.create(stream(StreamPolicy.DROP_OLDEST, FraudCheckFilter.NONE, base + 3))
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(4)))
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(5)))
+                .then(() -> push(1))
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(6)))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void lastEventId_ShouldSignalWhenTheRingNoLongerHoldsTheGap() {
+        push(20); // anneau de 8 : ids 13..20
+
+        StepVerifier.create(stream(StreamPolicy.DROP_OLDEST, FraudCheckFilter.NONE, base + 2))
+                .assertNext(event -> assertThat(event.event()).isEqualTo("replay-truncated"))
+                .assertNext(event -> assertThat(event.id()).isEqualTo(id(13)))
+                .expectNextCount(7)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void lastEventId_ShouldResumeOnAnotherNodeWhenIdsAreStreamOffsets() {
+        FraudStreamService otherNode = new FraudStreamService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(otherNode, "bufferSize", 4);
+        ReflectionTestUtils.setField(otherNode, "defaultPolicy", StreamPolicy.DROP_OLDEST);
+        ReflectionTestUtils.setField(otherNode, "replaySize", 8);
+        otherNode.init();
+        // Les deux instances relaient le même fraud-stream
+        for (long offset = 40; offset < 45; offset++) {
+            streamService.pushEvent(check(offset), offset);
+            otherNode.pushEvent(check(offset), offset);
+        }
+
+        StepVerifier.create(otherNode.getFraudStream(StreamPolicy.DROP_OLDEST, FraudCheckFilter.NONE, 42L))
+                .assertNext(event -> assertThat(event.id()).isEqualTo("43"))
+                .assertNext(event -> assertThat(event.id()).isEqualTo("44"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private Flux<ServerSentEvent<?>> stream(StreamPolicy policy, FraudCheckFilter filter, Long lastEventId) {
+        return streamService.getFraudStream(policy, filter, lastEventId);
+    }
+
+    private String id(int n) {
+        return Long.toString(base + n);
+    }
+
+    private void push(int count) {
+        long first = streamService.lastEventId() - base + 1;
+        for (long i = first; i < first + count; i++) {
+            streamService.pushEvent(check(i));
+        }
+    }
+
+    private static FraudCheck check(long i) {
+        FraudCheck check = new FraudCheck();
+        check.setScore(i / 10f);
+        check.setRisk(i % 2 == 0 ? "HIGH" : "LOW");
+        return check;
+    }
+}
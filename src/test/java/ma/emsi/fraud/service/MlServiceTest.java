@@ -0,0 +1,63 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MlServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MlService mlService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mlService = new MlService(meterRegistry);
+        ReflectionTestUtils.setField(mlService, "modelPath", "models/fraud_model.onnx");
+        ReflectionTestUtils.setField(mlService, "modelDir", "models");
+        ReflectionTestUtils.setField(mlService, "maxBatchSize", 8);
+        // Assez long pour que les requêtes concurrentes partagent un lot
+        ReflectionTestUtils.setField(mlService, "maxBatchWait", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(mlService, "batchQueueCapacity", 100);
+        ReflectionTestUtils.setField(mlService, "poolSize", 1);
+        ReflectionTestUtils.setField(mlService, "intraOpThreads", 1);
+        ReflectionTestUtils.setField(mlService, "warmupBatches", 1);
+        ReflectionTestUtils.setField(mlService, "riskThreshold", 0.0001);
+        mlService.loadModel();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mlService.cleanup();
+    }
+
+    @Test
+    void score_ShouldRejectAnIncompleteRequestWithoutFailingItsBatch() {
+        FraudRequest incomplete = new FraudRequest(null, 1000.0, 500.0, 1, 0.0, 0.0, null, null);
+
+        List<Float> scores = Flux.merge(mlService.score(request(100.0)), mlService.score(request(200.0)),
+                        mlService.score(incomplete)
+                                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(-1f)),
+                        mlService.score(request(300.0)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(scores).hasSize(4).containsOnlyOnce(-1f);
+        assertThat(scores).filteredOn(score -> score >= 0f).hasSize(3).allMatch(score -> score <= 1f);
+        // La requête incomplète n'est jamais entrée dans le lot
+        assertThat(meterRegistry.get("fraud.inference.batch.size").summary().max()).isEqualTo(3.0);
+    }
+
+    private static FraudRequest request(double amount) {
+        return new FraudRequest(amount, 1000.0, 1000.0 - amount, 1, 0.0, amount, null, null);
+    }
+}
@@ -0,0 +1,110 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ModelRegistryTest {
+
+    private static final Path MODELS = Path.of("models").toAbsolutePath().normalize();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ModelRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ModelRegistry.Settings settings = new ModelRegistry.Settings(MODELS, 1, 1, 4, 8, 1.0, false, false, 0.0001);
+        registry = new ModelRegistry(MODELS.resolve("fraud_model.onnx"), settings, new ScoreTranslator(),
+                meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    void activate_ShouldSwapWithoutFailingInFlightPredictions() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> load = executor.submit(() -> {
+            int predictions = 0;
+            while (running.get()) {
+                assertThat(registry.predict(batch())).hasSize(2);
+                predictions++;
+            }
+            return predictions;
+        });
+
+        String previous = registry.status().active().id();
+        registry.activate("fraud_detection.onnx");
+        registry.activate("fraud_model.onnx");
+        running.set(false);
+
+        assertThat(load.get()).isPositive();
+        executor.shutdown();
+        assertThat(registry.status().active().id()).isNotEqualTo(previous).startsWith("fraud_model.onnx#");
+        assertThat(meterRegistry.counter("fraud.model.swaps").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void shadow_ShouldBeScoredAndPromotable() throws Exception {
+        registry.loadShadow("fraud_detection.onnx");
+        registry.predict(batch());
+
+        await().untilAsserted(() -> assertThat(
+                meterRegistry.summary("fraud.model.shadow.score-delta").count()).isEqualTo(2));
+
+        registry.promoteShadow();
+        assertThat(registry.status().active().file()).isEqualTo("fraud_detection.onnx");
+        assertThat(registry.status().shadow()).isNull();
+        assertThatThrownBy(registry::promoteShadow).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void retiredVersions_ShouldRemoveTheirLatencySeries() throws Exception {
+        registry.loadShadow("fraud_detection.onnx");
+        registry.activate("fraud_detection.onnx");
+        registry.dropShadow();
+
+        assertThat(meterRegistry.find("fraud.model.latency").timers())
+                .extracting(timer -> timer.getId().getTag("model"))
+                .containsExactly(registry.status().active().id());
+    }
+
+    @Test
+    void filesOutsideTheModelDirectory_ShouldBeRejected() {
+        assertThatThrownBy(() -> registry.activate("../pom.xml")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry.loadShadow("missing.onnx")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(registry.status().available()).contains("fraud_detection.onnx", "fraud_model.onnx");
+    }
+
+    private static MlService.FeatureBatch batch() {
+        FraudRequest[] rows = {
+                new FraudRequest(181.0, 181.0, 0.0, 1, 0.0, 0.0, null, null),
+                new FraudRequest(9839.64, 170136.0, 160296.36, 0, 0.0, 0.0, null, null) };
+        return new MlService.FeatureBatch() {
+            @Override
+            public int rows() {
+                return rows.length;
+            }
+
+            @Override
+            public FraudRequest row(int index) {
+                return rows[index];
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.DecisionPath;
+import ma.emsi.fraud.model.FraudRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RulePreFilterTest {
+
+    private final RulePreFilter rules = new RulePreFilter(new SimpleMeterRegistry(), true,
+            List.of(0, 3, 4), List.of(1, 2), 0.99);
+
+    @Test
+    void safeTypes_ShouldBeDecidedLowWithoutTheModel() {
+        for (int type : new int[] { 0, 3, 4 }) {
+            assertThat(rules.evaluate(request(type, 9000.0, 10000.0, 1000.0)))
+                    .hasValueSatisfying(decision -> assertThat(decision.path()).isEqualTo(DecisionPath.RULE_SAFE));
+        }
+    }
+
+    @Test
+    void balanceDrainTransfer_ShouldBeDecidedHigh() {
+        assertThat(rules.evaluate(request(1, 181000.0, 181000.0, 0.0)))
+                .hasValueSatisfying(decision -> {
+                    assertThat(decision.path()).isEqualTo(DecisionPath.RULE_FRAUD);
+                    assertThat(decision.score()).isEqualTo(1.0f);
+                });
+    }
+
+    @Test
+    void ordinaryTransfersAndCashOuts_ShouldGoThroughTheModel() {
+        assertThat(rules.evaluate(request(1, 500.0, 1000.0, 500.0))).isEmpty();
+        assertThat(rules.evaluate(request(2, 229133.94, 15325.0, 0.0))).hasValueSatisfying(
+                decision -> assertThat(decision.path()).isEqualTo(DecisionPath.RULE_FRAUD));
+        assertThat(rules.evaluate(request(2, 1000.0, 0.0, 0.0))).isEmpty(); // compte déjà vide
+    }
+
+    @Test
+    void missingType_ShouldNotBeTreatedAsPayment() {
+        assertThat(rules.evaluate(new FraudRequest(9000.0, 10000.0, 1000.0, null, 0.0, 0.0, null, null))).isEmpty();
+    }
+
+    @Test
+    void riskyTypes_ShouldBeTheDrainTypes() {
+        assertThat(rules.isRiskyType(1)).isTrue();
+        assertThat(rules.isRiskyType(2)).isTrue();
+        assertThat(rules.isRiskyType(0)).isFalse();
+        assertThat(rules.isRiskyType(null)).isFalse();
+    }
+
+    @Test
+    void disabledFilter_ShouldNeverDecide() {
+        RulePreFilter disabled = new RulePreFilter(new SimpleMeterRegistry(), false,
+                List.of(0, 3, 4), List.of(1, 2), 0.99);
+
+        assertThat(disabled.evaluate(request(0, 10.0, 100.0, 90.0))).isEmpty();
+    }
+
+    private static FraudRequest request(int type, double amount, double oldBalance, double newBalance) {
+        return new FraudRequest(amount, oldBalance, newBalance, type, 0.0, 0.0, "127.0.0.1", "a@b.c");
+    }
+}
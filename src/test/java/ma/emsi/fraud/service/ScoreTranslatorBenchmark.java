@@ -0,0 +1,167 @@
+package ma.emsi.fraud.service;
+
+import ai.djl.Model;
+import ai.djl.metric.Metrics;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.nn.Block;
+import ai.djl.translate.TranslatorContext;
+import ma.emsi.fraud.model.FraudRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translator seul (sans passe ONNX) : lot -> tenseur [N, 6] et sorties du
+ * RandomForest -> N scores, en ns par ligne. Dans ce package car
+ * {@link ScoreTranslator} et {@link MlService.FeatureBatch} sont internes au service.
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.includes=ScoreTranslatorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoreTranslatorBenchmark {
+
+    @Param({ "1", "64" })
+    public int rows;
+
+    private final ScoreTranslator translator = new ScoreTranslator();
+    private NDManager root;
+    private MlService.FeatureBatch batch;
+    private float[] probabilities;
+    private long[] labels;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        root = NDManager.newBaseManager();
+        FraudRequest[] requests = new FraudRequest[rows];
+        probabilities = new float[rows * 2];
+        labels = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            requests[i] = ModelVersion.syntheticRequest(i);
+            probabilities[i * 2] = 0.9f;
+            probabilities[i * 2 + 1] = 0.1f;
+        }
+        batch = new MlService.FeatureBatch() {
+            @Override
+            public int rows() {
+                return requests.length;
+            }
+
+            @Override
+            public FraudRequest row(int index) {
+                return requests[index];
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        root.close();
+    }
+
+    /**
+     * Encodage dans le buffer direct + création du NDArray natif
+     */
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public NDList processInput() {
+        // 64 lignes par invocation quel que soit rows : 64 lots d'une ligne ou un lot de 64
+        NDList last = null;
+        for (int i = 0; i < 64 / rows; i++) {
+            try (Context ctx = new Context(root.newSubManager())) {
+                last = translator.processInput(ctx, batch);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Lecture des probabilités [N, 2] -> scores
+     */
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public float[] processOutput() {
+        float[] last = null;
+        for (int i = 0; i < 64 / rows; i++) {
+            try (Context ctx = new Context(root.newSubManager())) {
+                ctx.setAttachment("batch", batch);
+                NDList outputs = new NDList(ctx.getNDManager().create(labels),
+                        ctx.getNDManager().create(probabilities, new Shape(rows, 2)));
+                last = translator.processOutput(ctx, outputs);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Contexte minimal : seul le NDManager et les attachements sont utilisés par le Translator
+     */
+    private static final class Context implements TranslatorContext {
+        private final NDManager manager;
+        private final Map<String, Object> attachments = new HashMap<>();
+
+        Context(NDManager manager) {
+            this.manager = manager;
+        }
+
+        @Override
+        public Model getModel() {
+            return null;
+        }
+
+        @Override
+        public NDManager getNDManager() {
+            return manager;
+        }
+
+        @Override
+        public NDManager getPredictorManager() {
+            return manager;
+        }
+
+        @Override
+        public Block getBlock() {
+            return null;
+        }
+
+        @Override
+        public Metrics getMetrics() {
+            return null;
+        }
+
+        @Override
+        public Object getAttachment(String key) {
+            return attachments.get(key);
+        }
+
+        @Override
+        public void setAttachment(String key, Object value) {
+            attachments.put(key, value);
+        }
+
+        @Override
+        public void close() {
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class VelocityFeatureStoreTest {
+
+    private static final long T0 = 1_800_000_000_000L;
+
+    @SuppressWarnings("unchecked")
+    private final VelocityFeatureStore store = new VelocityFeatureStore(new SimpleMeterRegistry(),
+            mock(ObjectProvider.class), Duration.ofHours(1), 1000, false, Duration.ofSeconds(1));
+
+    @Test
+    void record_ShouldCountEachEntityOverTheThreeWindows() {
+        for (int i = 0; i < 5; i++) {
+            store.record("10.0.0.1", "User@Example.com", "C1", 100.0, T0 + i * 1000);
+        }
+        VelocityFeatureStore.VelocitySnapshot snapshot = store.record("10.0.0.1", "user@example.com", null, 50.0,
+                T0 + 5000);
+
+        assertThat(snapshot.ip().count1m()).isEqualTo(6);
+        assertThat(snapshot.ip().amount1m()).isEqualTo(550.0);
+        assertThat(snapshot.email().count1h()).isEqualTo(6); // email normalisé
+        assertThat(snapshot.account()).isEqualTo(VelocityFeatureStore.EntityVelocity.EMPTY);
+        assertThat(snapshot.maxCount1m()).isEqualTo(6);
+    }
+
+    @Test
+    void windows_ShouldSlideOutOldEvents() {
+        store.record("10.0.0.2", null, null, 10.0, T0);
+        VelocityFeatureStore.EntityVelocity later = store.record("10.0.0.2", null, null, 20.0,
+                T0 + Duration.ofMinutes(5).toMillis()).ip();
+
+        assertThat(later.count1m()).isEqualTo(1);
+        assertThat(later.count10m()).isEqualTo(2);
+        assertThat(later.amount1h()).isEqualTo(30.0);
+
+        VelocityFeatureStore.EntityVelocity nextHour = store.record("10.0.0.2", null, null, 5.0,
+                T0 + Duration.ofMinutes(75).toMillis()).ip();
+        assertThat(nextHour.count1h()).isEqualTo(1);
+    }
+
+    @Test
+    void remoteEvents_ShouldAddOtherInstancesTrafficOnce() {
+        List<VelocityFeatureStore.VelocityEvent> replicated = new ArrayList<>();
+        store.replicateTo(replicated::add);
+        FraudRequest request = new FraudRequest(100.0, 100.0, 0.0, 1, 0.0, 0.0, "10.0.0.3", null, "C3");
+
+        store.record(request);
+        // Son propre événement revient par le topic : déjà compté
+        store.recordRemote(replicated.get(0));
+        long now = System.currentTimeMillis();
+        store.recordRemote(new VelocityFeatureStore.VelocityEvent("other-node", "10.0.0.3", null, "C3", 50.0, now));
+
+        assertThat(replicated).singleElement().satisfies(event -> {
+            assertThat(event.accountId()).isEqualTo("C3");
+            assertThat(event.amount()).isEqualTo(100.0);
+        });
+        VelocityFeatureStore.VelocitySnapshot snapshot = store.lookup("10.0.0.3", null, "C3");
+        assertThat(snapshot.ip().count1m()).isEqualTo(2);
+        assertThat(snapshot.account().amount1m()).isEqualTo(150.0);
+    }
+
+    @Test
+    void eventsOlderThanTheRing_ShouldBeIgnored() {
+        // Rejeu : la tranche de T0 a déjà été réutilisée par T0 + 60 s
+        SlidingCounter counter = new SlidingCounter(6, 10_000);
+        counter.add(T0 + 60_000, 1.0);
+        counter.add(T0, 1.0);
+        assertThat(counter.count(T0 + 60_000)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,64 @@
+package ma.emsi.fraud.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.fraud.model.FraudCheck;
+import ma.emsi.fraud.model.RecordsPage;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WarmupRunnerTest {
+
+    private final MlService mlService = mock(MlService.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, FraudCheck> kafkaTemplate = mock(KafkaTemplate.class);
+    private final FraudCheckQueryService queryService = mock(FraudCheckQueryService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void run_ShouldWarmEveryStageWithinTheRoundBounds() {
+        when(mlService.score(any())).thenReturn(Mono.just(0.01f));
+        when(queryService.search(any(), any(), anyInt())).thenReturn(Mono.just(new RecordsPage(List.of(), null)));
+        when(kafkaTemplate.partitionsFor(AuditPublisher.TOPIC)).thenThrow(new IllegalStateException("no broker"));
+
+        runner(true).run(null);
+
+        verify(mlService, atLeast(3 * 16)).score(any());
+        verify(mlService, atMost(5 * 16)).score(any());
+        verify(queryService, times(4)).search(any(), any(), anyInt());
+        // Kafka indisponible : étape en échec mais le warm-up continue
+        assertThat(meterRegistry.find("fraud.warmup.duration").timers()).hasSize(3);
+    }
+
+    @Test
+    void disabled_ShouldNotTouchDependencies() {
+        runner(false).run(null);
+
+        verify(mlService, times(0)).score(any());
+        assertThat(meterRegistry.find("fraud.warmup.duration").timers()).isEmpty();
+    }
+
+    @Test
+    void isStable_ShouldCompareRelativeChange() {
+        assertThat(WarmupRunner.isStable(1000, 1100, 0.15)).isTrue();
+        assertThat(WarmupRunner.isStable(1000, 800, 0.15)).isFalse();
+    }
+
+    private WarmupRunner runner(boolean enabled) {
+        return new WarmupRunner(mlService, kafkaTemplate, queryService, meterRegistry, enabled,
+                16, 3, 5, 0.15, Duration.ofSeconds(10), 4);
+    }
+}